@@ -99,6 +99,7 @@ CREATE TABLE RespuestasJugador (
                                    opcionSeleccionada      INTEGER REFERENCES OpcionesRespuesta(opcionID) ON DELETE SET NULL,
                                    esCorrecta              BOOLEAN,
                                    tiempoTomado            INTEGER,
+                                   tiempoTomadoMs          INTEGER,
                                    puntosGanados           INTEGER DEFAULT 0,
                                    respondioEn             TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
 
@@ -130,4 +131,14 @@ CREATE INDEX idx_participantes_usuario ON Participantes(FKUsuario);
 
 -- RespuestasJugador
 CREATE INDEX idx_respuestas_participante ON RespuestasJugador(FKParticipante);
-CREATE INDEX idx_respuestas_sala ON RespuestasJugador(FKSala);
\ No newline at end of file
+CREATE INDEX idx_respuestas_sala ON RespuestasJugador(FKSala);
+
+-- =============================================
+-- MIGRACIONES
+-- =============================================
+
+-- Tiempo de respuesta medido por el servidor (ms)
+ALTER TABLE RespuestasJugador ADD COLUMN IF NOT EXISTS tiempoTomadoMs INTEGER;
+
+-- Ids de respuestas en bloques de 50 (allocationSize de RespuestasJugador): inserts en lote
+ALTER SEQUENCE respuestasjugador_respuestaid_seq INCREMENT BY 50;
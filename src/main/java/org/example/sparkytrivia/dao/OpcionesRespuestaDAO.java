@@ -3,6 +3,7 @@ package org.example.sparkytrivia.dao;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import org.example.sparkytrivia.model.OpcionesRespuesta;
+import org.example.sparkytrivia.model.Preguntas;
 import org.example.sparkytrivia.util.JPAUtil;
 
 import java.util.List;
@@ -13,6 +14,9 @@ import java.util.List;
  */
 public class OpcionesRespuestaDAO {
 
+    // Coleccion Preguntas.opciones en el cache de segundo nivel
+    private static final String COLECCION_OPCIONES = Preguntas.class.getName() + ".opciones";
+
     /**
      * Crear una nueva opción de respuesta
      *
@@ -218,6 +222,8 @@ public class OpcionesRespuestaDAO {
                     .setParameter("preguntaId", preguntaId)
                     .executeUpdate();
             em.getTransaction().commit();
+            // El DELETE masivo invalida la region de opciones, no la coleccion de la pregunta
+            JPAUtil.invalidarColeccion(COLECCION_OPCIONES, preguntaId);
         } catch (Exception e) {
             if (em.getTransaction().isActive()) {
                 em.getTransaction().rollback();
@@ -3,9 +3,15 @@ package org.example.sparkytrivia.dao;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import org.example.sparkytrivia.model.Participantes;
+import org.example.sparkytrivia.model.RespuestasJugador;
 import org.example.sparkytrivia.util.JPAUtil;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
 
+import java.sql.PreparedStatement;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ParticipantesDAO {
 
@@ -90,7 +96,7 @@ public class ParticipantesDAO {
             return em.createQuery(
                             "SELECT p FROM Participantes p WHERE p.sala.salaId = :salaId " +
                                     "AND p.esActivo = true " +
-                                    "ORDER BY p.puntajeFinal DESC, p.unio ASC", Participantes.class)
+                                    "ORDER BY p.puntajeFinal DESC, p.unio ASC, p.participanteId ASC", Participantes.class)
                     .setParameter("salaId", salaId)
                     .getResultList();
         } finally {
@@ -130,6 +136,128 @@ public class ParticipantesDAO {
         }
     }
 
+    // Sumar a cada participante los resultados de un lote de respuestas
+    // Un UPDATE atomico por participante (sin leerlo antes), todos en un solo lote JDBC
+    public void acumularRespuestas(List<RespuestasJugador> respuestas) {
+        // participanteId -> {puntos, respondidas, correctas}
+        Map<Integer, int[]> incrementos = new LinkedHashMap<>();
+        for (RespuestasJugador respuesta : respuestas) {
+            int[] suma = incrementos.computeIfAbsent(respuesta.getParticipante().getParticipanteId(),
+                    id -> new int[3]);
+            suma[0] += respuesta.getPuntosGanados();
+            suma[1]++;
+            if (Boolean.TRUE.equals(respuesta.getEsCorrecta())) {
+                suma[2]++;
+            }
+        }
+        sumarContadores(incrementos);
+    }
+
+    // Sumar resultados a un participante con un solo UPDATE atomico
+    // @return false si el participante no existe
+    public boolean sumarResultado(Integer participanteId, int puntos, int respondidas, int correctas) {
+        Map<Integer, int[]> incremento = new LinkedHashMap<>();
+        incremento.put(participanteId, new int[]{puntos, respondidas, correctas});
+        return sumarContadores(incremento) > 0;
+    }
+
+    // SET x = x + ? en la BD: dos escrituras simultaneas no se pisan
+    // @return filas actualizadas
+    private int sumarContadores(Map<Integer, int[]> incrementos) {
+        if (incrementos.isEmpty()) {
+            return 0;
+        }
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            int actualizadas = em.unwrap(Session.class).doReturningWork(conexion -> {
+                try (PreparedStatement ps = conexion.prepareStatement(
+                        "UPDATE participantes SET puntajefinal = puntajefinal + ?, " +
+                                "preguntarespuesta = preguntarespuesta + ?, " +
+                                "preguntacorrecta = preguntacorrecta + ? WHERE participanteid = ?")) {
+                    for (Map.Entry<Integer, int[]> entrada : incrementos.entrySet()) {
+                        int[] suma = entrada.getValue();
+                        ps.setInt(1, suma[0]);
+                        ps.setInt(2, suma[1]);
+                        ps.setInt(3, suma[2]);
+                        ps.setInt(4, entrada.getKey());
+                        ps.addBatch();
+                    }
+                    int total = 0;
+                    for (int filas : ps.executeBatch()) {
+                        total += Math.max(filas, 0);
+                    }
+                    return total;
+                }
+            });
+            em.getTransaction().commit();
+            return actualizadas;
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Error al acumular respuestas: " + e.getMessage(), e);
+        } finally {
+            em.close();
+        }
+    }
+
+    // Asignar rangofinal a todos los participantes activos de una sala en un solo UPDATE
+    // Mismo orden que obtenerRanking: puntaje DESC, unio ASC (nulos al final)
+    // @return participantes actualizados
+    public int asignarRangos(Integer salaId) {
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            int actualizados = em.createNativeQuery(
+                            "UPDATE participantes p SET rangofinal = r.rango " +
+                                    "FROM (SELECT participanteid, ROW_NUMBER() OVER (" +
+                                    "ORDER BY puntajefinal DESC, unio ASC NULLS LAST, participanteid ASC) AS rango " +
+                                    "FROM participantes WHERE fksala = :salaId AND esactivo = true) r " +
+                                    "WHERE p.participanteid = r.participanteid")
+                    .setParameter("salaId", salaId)
+                    // Solo toca participantes: sin esto Hibernate vaciaria todo el cache de segundo nivel
+                    .unwrap(NativeQuery.class)
+                    .addSynchronizedEntityClass(Participantes.class)
+                    .executeUpdate();
+            em.getTransaction().commit();
+            return actualizados;
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Error al asignar rangos: " + e.getMessage(), e);
+        } finally {
+            em.close();
+        }
+    }
+
+    // Fijar los contadores absolutos de cada participante (una transaccion)
+    public void fijarContadores(List<Participantes> participantes) {
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (Participantes p : participantes) {
+                em.createQuery("UPDATE Participantes p SET p.puntajeFinal = :puntaje, " +
+                                "p.preguntaCorrecta = :correctas, p.preguntaRespuesta = :respondidas " +
+                                "WHERE p.participanteId = :id")
+                        .setParameter("puntaje", p.getPuntajeFinal())
+                        .setParameter("correctas", p.getPreguntaCorrecta())
+                        .setParameter("respondidas", p.getPreguntaRespuesta())
+                        .setParameter("id", p.getParticipanteId())
+                        .executeUpdate();
+            }
+            em.getTransaction().commit();
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Error al fijar contadores: " + e.getMessage(), e);
+        } finally {
+            em.close();
+        }
+    }
+
     // Marcar participante como inactivo (abandonó la sala)
     public void marcarComoInactivo(Integer participanteId) {
         EntityManager em = JPAUtil.getEntityManager();
@@ -9,6 +9,9 @@ import java.util.List;
 
 public class RespuestasJugadorDAO {
 
+    // Igual que hibernate.jdbc.batch_size en persistence.xml
+    private static final int TAMANO_LOTE = 50;
+
     // Crear una nueva respuesta
     public RespuestasJugador crear(RespuestasJugador respuesta) {
         EntityManager em = JPAUtil.getEntityManager();
@@ -27,6 +30,35 @@ public class RespuestasJugadorDAO {
         }
     }
 
+    // Crear todas las respuestas de un lote en una sola transaccion
+    // Los INSERT salen en lotes JDBC de TAMANO_LOTE (hibernate.jdbc.batch_size)
+    public void crearLote(List<RespuestasJugador> respuestas) {
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            int i = 0;
+            for (RespuestasJugador respuesta : respuestas) {
+                em.persist(respuesta);
+                if (++i % TAMANO_LOTE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.getTransaction().commit();
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            // Los ids asignados se perdieron con el rollback: el lote se puede reintentar
+            for (RespuestasJugador respuesta : respuestas) {
+                respuesta.setRespuestaId(null);
+            }
+            throw new RuntimeException("Error al crear lote de respuestas: " + e.getMessage(), e);
+        } finally {
+            em.close();
+        }
+    }
+
     // Buscar respuesta por ID
     public RespuestasJugador buscarPorId(Integer id) {
         EntityManager em = JPAUtil.getEntityManager();
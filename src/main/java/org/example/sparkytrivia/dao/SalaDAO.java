@@ -65,6 +65,18 @@ public class SalaDAO {
         }
     }
 
+    // Listar salas con una partida en curso (para reanudarlas al arrancar)
+    public List<Sala> listarEnProgreso() {
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            return em.createQuery(
+                            "SELECT s FROM Sala s WHERE s.status = 'en_progreso'", Sala.class)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
     // Listar salas públicas activas
     public List<Sala> listarPublicasActivas() {
         EntityManager em = JPAUtil.getEntityManager();
@@ -144,4 +156,24 @@ public class SalaDAO {
             em.close();
         }
     }
-}
\ No newline at end of file
+
+    // Actualizar solo la pregunta actual con un UPDATE directo (sin leer la sala)
+    public void actualizarPreguntaActual(Integer salaId, int preguntaActual) {
+        EntityManager em = JPAUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createQuery("UPDATE Sala s SET s.preguntaActual = :pregunta WHERE s.salaId = :salaId")
+                    .setParameter("pregunta", preguntaActual)
+                    .setParameter("salaId", salaId)
+                    .executeUpdate();
+            em.getTransaction().commit();
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Error al actualizar pregunta actual: " + e.getMessage(), e);
+        } finally {
+            em.close();
+        }
+    }
+}
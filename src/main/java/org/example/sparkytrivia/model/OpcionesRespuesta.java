@@ -1,9 +1,13 @@
 package org.example.sparkytrivia.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 @Table(name = "opcionesrespuesta")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "opciones")
 public class OpcionesRespuesta {
 
     // ========== ATRIBUTOS ==========
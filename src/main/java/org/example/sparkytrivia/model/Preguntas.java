@@ -1,12 +1,16 @@
 package org.example.sparkytrivia.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
 @Table(name = "preguntas")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "preguntas")
 public class Preguntas {
 
     @Id
@@ -48,6 +52,7 @@ public class Preguntas {
 
     // Relación: Una pregunta tiene MUCHAS opciones de respuesta
     @OneToMany(mappedBy = "pregunta", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "preguntas-opciones")
     private List<OpcionesRespuesta> opciones = new ArrayList<>();
 
     // ========== CONSTRUCTORES ==========
@@ -7,8 +7,12 @@ import java.time.LocalDateTime;
 @Table(name = "respuestasjugador")
 public class RespuestasJugador {
 
+    // Secuencia con asignacion en bloques de 50 (INCREMENT BY 50 en la BD):
+    // los ids salen de memoria y Hibernate puede agrupar los INSERT en lotes JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "respuestasjugador_seq")
+    @SequenceGenerator(name = "respuestasjugador_seq", sequenceName = "respuestasjugador_respuestaid_seq",
+            allocationSize = 50)
     @Column(name = "respuestaid")
     private Integer respuestaId;
 
@@ -34,6 +38,9 @@ public class RespuestasJugador {
     @Column(name = "tiempotomado")
     private Integer tiempoTomado; // En segundos
 
+    @Column(name = "tiempotomadoms")
+    private Integer tiempoTomadoMs; // En milisegundos, medido por el servidor
+
     @Column(name = "puntosganados")
     private Integer puntosGanados = 0;
 
@@ -52,9 +59,12 @@ public class RespuestasJugador {
     }
 
     // Callback antes de persistir
+    // (respetar la hora real de respuesta si ya viene puesta: la escritura es diferida)
     @PrePersist
     protected void onCreate() {
-        this.respondioEn = LocalDateTime.now();
+        if (this.respondioEn == null) {
+            this.respondioEn = LocalDateTime.now();
+        }
     }
 
     // GETTERS Y SETTERS
@@ -115,6 +125,14 @@ public class RespuestasJugador {
         this.tiempoTomado = tiempoTomado;
     }
 
+    public Integer getTiempoTomadoMs() {
+        return tiempoTomadoMs;
+    }
+
+    public void setTiempoTomadoMs(Integer tiempoTomadoMs) {
+        this.tiempoTomadoMs = tiempoTomadoMs;
+    }
+
     public Integer getPuntosGanados() {
         return puntosGanados;
     }
@@ -137,6 +155,7 @@ public class RespuestasJugador {
                 "respuestaId=" + respuestaId +
                 ", esCorrecta=" + esCorrecta +
                 ", tiempoTomado=" + tiempoTomado +
+                ", tiempoTomadoMs=" + tiempoTomadoMs +
                 ", puntosGanados=" + puntosGanados +
                 '}';
     }
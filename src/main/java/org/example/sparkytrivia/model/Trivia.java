@@ -2,11 +2,15 @@ package org.example.sparkytrivia.model;
 
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 
 
 @Entity//indica que esta clase es una entidad JPA
 @Table(name = "trivia") //mapea a la tabla trivia
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "trivia")
 public class Trivia {
 
     //ATRIBUTOS
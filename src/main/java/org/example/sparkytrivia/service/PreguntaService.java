@@ -6,6 +6,7 @@ import org.example.sparkytrivia.dao.TriviaDAO;
 import org.example.sparkytrivia.model.OpcionesRespuesta;
 import org.example.sparkytrivia.model.Preguntas;
 import org.example.sparkytrivia.model.Trivia;
+import org.example.sparkytrivia.websocket.CacheTramas;
 
 import java.util.List;
 
@@ -146,6 +147,9 @@ public class PreguntaService {
         trivia.setPreguntasTotales(trivia.getPreguntasTotales() + 1);
         triviaDAO.actualizar(trivia);
 
+        // Cambia el total de preguntas de cada trama
+        CacheTramas.invalidarTrivia(triviaId);
+
         // Retornar la pregunta creada (con opciones cargadas)
         return preguntasDAO.buscarPorId(pregunta.getPreguntaId());
     }
@@ -285,7 +289,9 @@ public class PreguntaService {
         }
 
         // Guardar cambios finales
-        return preguntasDAO.actualizar(pregunta);
+        Preguntas actualizada = preguntasDAO.actualizar(pregunta);
+        CacheTramas.invalidarTrivia(actualizada.getTrivia().getTriviaId());
+        return actualizada;
     }
 
     // ========== ELIMINAR PREGUNTA ==========
@@ -317,6 +323,8 @@ public class PreguntaService {
         // Actualizar contador de preguntas en trivia
         trivia.setPreguntasTotales(trivia.getPreguntasTotales() - 1);
         triviaDAO.actualizar(trivia);
+
+        CacheTramas.invalidarTrivia(trivia.getTriviaId());
     }
 
     // ========== REORDENAR PREGUNTAS ==========
@@ -349,6 +357,9 @@ public class PreguntaService {
 
         // Reordenar
         preguntasDAO.reordenar(triviaId, nuevoOrden);
+
+        // Cambia el numero de pregunta de cada trama
+        CacheTramas.invalidarTrivia(triviaId);
     }
 
     // ========== VALIDAR PREGUNTA PARA JUEGO ==========
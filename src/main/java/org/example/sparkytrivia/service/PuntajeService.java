@@ -58,6 +58,39 @@ public class PuntajeService {
         return puntosFinales;
     }
 
+    /**
+     * CALCULAR PUNTAJE CON PRECISIÓN DE MILISEGUNDOS
+     * Versión continua de calcularPuntaje: 100% hasta 5 s, luego baja
+     * 10% cada 5 s de forma lineal, con un mínimo de 40%
+     *
+     * Ejemplo: 7.5 s → 95%, 12.5 s → 85%
+     *
+     * El servidor mide desde que envía la pregunta hasta que recibe la respuesta:
+     * una respuesta dada a tiempo en el cliente puede llegar después del límite
+     * por la red. Hasta limite + toleranciaMs cuenta como respondida en el límite.
+     *
+     * @param tiempoRespuestaMs Tiempo medido por el servidor, en milisegundos
+     * @param puntosBase Puntos base de la pregunta (ej: 100)
+     * @param limiteTiempo Tiempo límite de la pregunta en segundos (ej: 30)
+     * @param toleranciaMs Margen de red después del límite (ej: el buffer de latencia de la sala)
+     * @return Puntos calculados
+     */
+    public int calcularPuntajeMs(long tiempoRespuestaMs, int puntosBase, int limiteTiempo, int toleranciaMs) {
+
+        long limiteMs = limiteTiempo * 1000L;
+
+        // Si se pasó del tiempo (y del margen), 0 puntos
+        if (tiempoRespuestaMs < 0 || tiempoRespuestaMs > limiteMs + toleranciaMs) {
+            return 0;
+        }
+        tiempoRespuestaMs = Math.min(tiempoRespuestaMs, limiteMs);
+
+        double porcentaje = 1.0 - Math.max(0, tiempoRespuestaMs - 5000) / 5000.0 * 0.1;
+        porcentaje = Math.max(porcentaje, 0.4);
+
+        return (int) Math.round(puntosBase * porcentaje);
+    }
+
     /**
      * CALCULAR PUNTAJE CON FÓRMULA LINEAL
      * Alternativa: decremento lineal según tiempo
@@ -84,42 +117,26 @@ public class PuntajeService {
     /**
      * CALCULAR RANKING FINAL DE UNA SALA
      * Ordena a todos los participantes por puntaje y asigna posiciones
+     * (1, 2, 3, etc.) con un solo UPDATE ... ROW_NUMBER() en la BD
      *
      * @param salaId ID de la sala
      */
     public void calcularRanking(Integer salaId) {
-
-        // Obtener todos los participantes ordenados por puntaje
-        List<Participantes> participantes = participantesDAO.obtenerRanking(salaId);
-
-        // Asignar rangos (1, 2, 3, etc.)
-        int rango = 1;
-        for (Participantes participante : participantes) {
-            participante.setRangoFinal(rango);
-            participantesDAO.actualizar(participante);
-            rango++;
-        }
+        participantesDAO.asignarRangos(salaId);
     }
 
     /**
      * ACTUALIZAR PUNTAJE DE UN PARTICIPANTE
      * Suma puntos ganados en la pregunta actual al puntaje total
+     * (UPDATE atomico en la BD, sin leer el participante)
      *
      * @param participanteId ID del participante
      * @param puntosGanados Puntos de esta respuesta
      */
     public void actualizarPuntaje(Integer participanteId, int puntosGanados) {
-
-        Participantes participante = participantesDAO.buscarPorId(participanteId);
-        if (participante == null) {
+        if (!participantesDAO.sumarResultado(participanteId, puntosGanados, 0, 0)) {
             throw new RuntimeException("Participante no encontrado");
         }
-
-        // Sumar puntos al total
-        int puntajeActual = participante.getPuntajeFinal();
-        participante.setPuntajeFinal(puntajeActual + puntosGanados);
-
-        participantesDAO.actualizar(participante);
     }
 
     /**
@@ -129,21 +146,9 @@ public class PuntajeService {
      * @param esCorrecta Si la respuesta fue correcta
      */
     public void registrarRespuesta(Integer participanteId, boolean esCorrecta) {
-
-        Participantes participante = participantesDAO.buscarPorId(participanteId);
-        if (participante == null) {
+        if (!participantesDAO.sumarResultado(participanteId, 0, 1, esCorrecta ? 1 : 0)) {
             throw new RuntimeException("Participante no encontrado");
         }
-
-        // Incrementar contador de preguntas respondidas
-        participante.setPreguntaRespuesta(participante.getPreguntaRespuesta() + 1);
-
-        // Si es correcta, incrementar contador de correctas
-        if (esCorrecta) {
-            participante.setPreguntaCorrecta(participante.getPreguntaCorrecta() + 1);
-        }
-
-        participantesDAO.actualizar(participante);
     }
 
     /**
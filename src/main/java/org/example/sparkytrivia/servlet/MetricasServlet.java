@@ -0,0 +1,73 @@
+package org.example.sparkytrivia.servlet;
+
+import com.google.gson.Gson;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.example.sparkytrivia.util.JPAUtil;
+import org.example.sparkytrivia.websocket.FanOut;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * METRICAS DEL SERVIDOR (solo administradores)
+ *
+ * Endpoint: GET /api/metricas
+ *           -> pool:  conexiones a la BD (HikariCP)
+ *           -> cache: aciertos y fallos del cache de segundo nivel, por region
+ *           -> fanout: duracion de los broadcast, por sala con sesiones
+ *
+ * Requiere sesion iniciada con rol "admin"
+ */
+@WebServlet(name = "MetricasServlet", urlPatterns = {"/api/metricas"})
+public class MetricasServlet extends HttpServlet {
+
+    private static final String ROL_ADMIN = "admin";
+
+    private Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        response.setContentType("application/json; charset=UTF-8");
+        response.setCharacterEncoding("UTF-8");
+
+        Map<String, Object> result = new HashMap<>();
+
+        // Validar sesión
+        HttpSession session = request.getSession(false);
+
+        if (session == null || session.getAttribute("usuarioId") == null) {
+            result.put("success", false);
+            result.put("message", "Debes iniciar sesión");
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            response.getWriter().write(gson.toJson(result));
+            return;
+        }
+
+        // Verificar que sea administrador
+        if (!ROL_ADMIN.equals(session.getAttribute("rol"))) {
+            result.put("success", false);
+            result.put("message", "No tienes permiso para ver las métricas");
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            response.getWriter().write(gson.toJson(result));
+            return;
+        }
+
+        // Una parte no disponible (ej. sin pool HikariCP) no aparece en la respuesta;
+        // el fan-out no depende de la BD y siempre esta
+        result.put("success", true);
+        result.put("pool", JPAUtil.getMetricasPool());
+        result.put("cache", JPAUtil.getEstadisticasCache());
+        result.put("fanout", FanOut.getMetricas());
+        response.setStatus(HttpServletResponse.SC_OK);
+
+        response.getWriter().write(gson.toJson(result));
+    }
+}
@@ -0,0 +1,189 @@
+package org.example.sparkytrivia.servlet;
+
+import com.google.gson.Gson;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.example.sparkytrivia.dao.SalaDAO;
+import org.example.sparkytrivia.model.Sala;
+import org.example.sparkytrivia.websocket.ReproductorBitacora;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SERVLET DE REPETICION / AUDITORIA DE PARTIDAS (bitacora de eventos)
+ *
+ * Endpoint: GET  /api/salas/repeticion?codigo=XY34AB
+ *           -> ranking final reconstruido solo con la bitacora de la ultima partida
+ * Endpoint: POST /api/salas/repeticion?codigo=XY34AB&velocidad=4
+ *           -> repetir la ultima partida en una sala de espectadores
+ *              (se ve en juego.html?codigo={codigoEspectadores})
+ *
+ * Solo el host de la sala o un administrador
+ */
+@WebServlet(name = "RepeticionSalaServlet", urlPatterns = {"/api/salas/repeticion"})
+public class RepeticionSalaServlet extends HttpServlet {
+
+    private static final double VELOCIDAD_MAXIMA = 16;
+    private static final String ROL_ADMIN = "admin";
+
+    private Gson gson = new Gson();
+    private SalaDAO salaDAO = new SalaDAO();
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        response.setContentType("application/json; charset=UTF-8");
+        response.setCharacterEncoding("UTF-8");
+
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            Path partida = validarYBuscarPartida(request, response, result);
+            if (partida == null) {
+                response.getWriter().write(gson.toJson(result));
+                return;
+            }
+
+            List<ReproductorBitacora.Posicion> ranking = ReproductorBitacora.reconstruirRanking(partida);
+
+            result.put("success", true);
+            result.put("partida", partida.getFileName().toString());
+            result.put("ranking", ranking);
+            response.setStatus(HttpServletResponse.SC_OK);
+
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+
+            System.err.println("Error leyendo bitacora: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        response.getWriter().write(gson.toJson(result));
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        response.setContentType("application/json; charset=UTF-8");
+        response.setCharacterEncoding("UTF-8");
+
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            Path partida = validarYBuscarPartida(request, response, result);
+            if (partida == null) {
+                response.getWriter().write(gson.toJson(result));
+                return;
+            }
+
+            double velocidad = 1;
+            String velocidadParam = request.getParameter("velocidad");
+            if (velocidadParam != null && !velocidadParam.trim().isEmpty()) {
+                try {
+                    velocidad = Double.parseDouble(velocidadParam);
+                } catch (NumberFormatException e) {
+                    velocidad = 0;
+                }
+                if (velocidad <= 0 || velocidad > VELOCIDAD_MAXIMA) {
+                    result.put("success", false);
+                    result.put("message", "La velocidad debe estar entre 0 y " + (int) VELOCIDAD_MAXIMA);
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    response.getWriter().write(gson.toJson(result));
+                    return;
+                }
+            }
+
+            String codigoSala = request.getParameter("codigo").trim().toUpperCase();
+            String codigoEspectadores = ReproductorBitacora.reproducir(codigoSala, partida, velocidad);
+            if (codigoEspectadores == null) {
+                result.put("success", false);
+                result.put("message", "Ya hay demasiadas repeticiones en curso para esta sala");
+                response.setStatus(HttpServletResponse.SC_CONFLICT);
+                response.getWriter().write(gson.toJson(result));
+                return;
+            }
+
+            result.put("success", true);
+            result.put("codigoEspectadores", codigoEspectadores);
+            result.put("velocidad", velocidad);
+            response.setStatus(HttpServletResponse.SC_OK);
+
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+
+            System.err.println("Error iniciando repeticion: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        response.getWriter().write(gson.toJson(result));
+    }
+
+    /**
+     * Sesion, codigo, permiso (host o admin) y ultima partida terminada de la sala
+     *
+     * @return null si algo falta (el error ya quedo en result y en el status)
+     */
+    private Path validarYBuscarPartida(HttpServletRequest request, HttpServletResponse response,
+                                       Map<String, Object> result) throws IOException {
+        HttpSession session = request.getSession(false);
+
+        if (session == null || session.getAttribute("usuarioId") == null) {
+            result.put("success", false);
+            result.put("message", "Debes iniciar sesión");
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return null;
+        }
+
+        String codigoSala = request.getParameter("codigo");
+
+        // El codigo forma parte de una ruta en disco: solo letras y numeros
+        if (codigoSala == null || !codigoSala.trim().matches("[A-Za-z0-9]+")) {
+            result.put("success", false);
+            result.put("message", "Código de sala requerido");
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+
+        codigoSala = codigoSala.trim().toUpperCase();
+        Sala sala = salaDAO.buscarPorCodigo(codigoSala);
+        if (sala == null) {
+            result.put("success", false);
+            result.put("message", "Sala no encontrada");
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+
+        // Verificar que sea el host de la sala (o administrador)
+        Integer usuarioId = (Integer) session.getAttribute("usuarioId");
+        if (!sala.getHost().getUsuarioId().equals(usuarioId)
+                && !ROL_ADMIN.equals(session.getAttribute("rol"))) {
+            result.put("success", false);
+            result.put("message", "Solo el host puede ver o repetir las partidas de la sala");
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return null;
+        }
+
+        List<Path> partidas = ReproductorBitacora.partidas(codigoSala);
+        if (partidas.isEmpty()) {
+            result.put("success", false);
+            result.put("message", "La sala no tiene partidas terminadas registradas");
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        return partidas.get(partidas.size() - 1);
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.sparkytrivia.util;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import org.example.sparkytrivia.websocket.GameEngine;
+import org.example.sparkytrivia.websocket.GameManager;
+
+/**
+ * CICLO DE VIDA DE LA APLICACION
+ *
+ * Al arrancar crea el motor de juego (el log indica el modo de ejecucion
+ * de las salas) y reanuda las partidas que un reinicio dejo a medias.
+ * Al detener Tomcat para las salas (escribiendo lo pendiente), apaga el motor
+ * y al final cierra JPA.
+ */
+@WebListener
+public class AplicacionListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        GameEngine motor = GameEngine.getInstance();
+        System.out.println(" SparkyTrivia iniciado - modo de salas: " + motor.getModoEjecucion());
+
+        int reanudadas = GameManager.getInstance().reanudarSalasEnProgreso();
+        if (reanudadas > 0) {
+            System.out.println(" Partidas reanudadas despues del reinicio: " + reanudadas);
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        GameManager.getInstance().apagarSalas();
+        GameEngine.getInstance().apagar();
+        JPAUtil.close();
+    }
+}
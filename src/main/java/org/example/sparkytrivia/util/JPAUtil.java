@@ -1,23 +1,75 @@
 package org.example.sparkytrivia.util;
 
+import com.zaxxer.hikari.HikariDataSource;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Las conexiones salen de un pool HikariCP (configurado en persistence.xml).
+ * Cualquier propiedad del pool se puede cambiar al arrancar sin tocar el XML:
+ *   -Dhibernate.hikari.maximumPoolSize=40 -Dhibernate.hikari.leakDetectionThreshold=5000
+ *
+ * Trivia, Preguntas, OpcionesRespuesta y Usuario ademas pasan por el cache de
+ * segundo nivel (regiones en caffeine.conf).
+ */
 public class JPAUtil {
     private static final String PERSISTENCE_UNIT_NAME = "SparkyTriviaPU";
+    private static final String PREFIJO_POOL = "hibernate.hikari.";
     private static EntityManagerFactory factory;
+    private static HikariDataSource pool;
+    private static final MetricasPool metricasPool = new MetricasPool();
 
     static {
         try {
-            factory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME);
+            factory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME, configuracionPool());
             System.out.println("✅ EntityManagerFactory creado exitosamente");
+            registrarMetricasPool();
         } catch (Exception e) {
             System.err.println("❌ Error al crear EntityManagerFactory: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * Propiedades -Dhibernate.hikari.* que reemplazan a las del persistence.xml
+     */
+    private static Map<String, Object> configuracionPool() {
+        Map<String, Object> propiedades = new HashMap<>();
+        for (String nombre : System.getProperties().stringPropertyNames()) {
+            if (nombre.startsWith(PREFIJO_POOL)) {
+                propiedades.put(nombre, System.getProperty(nombre));
+            }
+        }
+        return propiedades;
+    }
+
+    private static void registrarMetricasPool() {
+        try {
+            ConnectionProvider proveedor = factory.unwrap(SessionFactoryImplementor.class)
+                    .getServiceRegistry().getService(ConnectionProvider.class);
+            if (proveedor == null || !proveedor.isUnwrappableAs(HikariDataSource.class)) {
+                System.out.println("⚠️ Sin pool HikariCP: no habra metricas de conexiones");
+                return;
+            }
+            pool = proveedor.unwrap(HikariDataSource.class);
+            pool.setMetricsTrackerFactory(metricasPool);
+            System.out.println("✅ Pool de conexiones " + pool.getPoolName() + " (max " +
+                    pool.getMaximumPoolSize() + ", fuga si > " + pool.getLeakDetectionThreshold() + " ms)");
+        } catch (Exception e) {
+            System.err.println("❌ No se pudieron registrar las metricas del pool: " + e.getMessage());
+        }
+    }
+
     public static EntityManager getEntityManager() {
         if (factory == null) {
             throw new IllegalStateException("EntityManagerFactory no está inicializado");
@@ -25,10 +77,73 @@ public class JPAUtil {
         return factory.createEntityManager();
     }
 
+    /**
+     * Uso del pool: conexiones activas/libres, espera para obtener una y timeouts
+     *
+     * @return null si no hay pool HikariCP
+     */
+    public static Map<String, Object> getMetricasPool() {
+        if (pool == null || pool.getHikariPoolMXBean() == null) {
+            return null;
+        }
+        Map<String, Object> metricas = metricasPool.instantanea(pool.getHikariPoolMXBean());
+        metricas.put("maximo", pool.getMaximumPoolSize());
+        return metricas;
+    }
+
+    /**
+     * Sacar del cache de segundo nivel una coleccion (ej. las opciones de una pregunta)
+     * Para los DELETE/UPDATE masivos, que Hibernate no relaciona con las colecciones
+     *
+     * @param rol nombre de la coleccion, ej. "org.example.sparkytrivia.model.Preguntas.opciones"
+     */
+    public static void invalidarColeccion(String rol, Object duenoId) {
+        if (factory != null) {
+            factory.unwrap(SessionFactory.class).getCache().evictCollectionData(rol, duenoId);
+        }
+    }
+
+    /**
+     * Aciertos, fallos y escrituras del cache de segundo nivel, en total y por region
+     *
+     * @return null si JPA no esta inicializado
+     */
+    public static Map<String, Object> getEstadisticasCache() {
+        if (factory == null) {
+            return null;
+        }
+        Statistics estadisticas = factory.unwrap(SessionFactory.class).getStatistics();
+
+        Map<String, Object> regiones = new LinkedHashMap<>();
+        for (String nombre : estadisticas.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = estadisticas.getDomainDataRegionStatistics(nombre);
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("aciertos", region.getHitCount());
+            datos.put("fallos", region.getMissCount());
+            datos.put("escrituras", region.getPutCount());
+            datos.put("tasaAciertos", tasa(region.getHitCount(), region.getMissCount()));
+            regiones.put(nombre, datos);
+        }
+
+        Map<String, Object> cache = new LinkedHashMap<>();
+        cache.put("aciertos", estadisticas.getSecondLevelCacheHitCount());
+        cache.put("fallos", estadisticas.getSecondLevelCacheMissCount());
+        cache.put("escrituras", estadisticas.getSecondLevelCachePutCount());
+        cache.put("tasaAciertos", tasa(estadisticas.getSecondLevelCacheHitCount(),
+                estadisticas.getSecondLevelCacheMissCount()));
+        cache.put("regiones", regiones);
+        return cache;
+    }
+
+    private static double tasa(long aciertos, long fallos) {
+        long total = aciertos + fallos;
+        return total == 0 ? 0.0 : (double) aciertos / total;
+    }
+
     public static void close() {
         if (factory != null && factory.isOpen()) {
             factory.close();
             System.out.println("✅ EntityManagerFactory cerrado");
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+package org.example.sparkytrivia.util;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * METRICAS DEL POOL DE CONEXIONES
+ *
+ * HikariCP avisa de cada conexion pedida (cuanto se espero, aunque venza),
+ * usada y de cada timeout; aqui solo se acumulan en contadores sin candados.
+ * El estado del pool (activas, libres, hilos esperando) sale de su MXBean.
+ */
+public class MetricasPool implements MetricsTrackerFactory {
+
+    private final LongAdder solicitudes = new LongAdder();
+    private final LongAdder esperaTotalNanos = new LongAdder();
+    private final LongAccumulator esperaMaximaNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder usoTotalMs = new LongAdder();
+    private final LongAccumulator usoMaximoMs = new LongAccumulator(Math::max, 0);
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder creadas = new LongAdder();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long nanos) {
+                solicitudes.increment();
+                esperaTotalNanos.add(nanos);
+                esperaMaximaNanos.accumulate(nanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long ms) {
+                usoTotalMs.add(ms);
+                usoMaximoMs.accumulate(ms);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+
+            @Override
+            public void recordConnectionCreatedMillis(long ms) {
+                creadas.increment();
+            }
+        };
+    }
+
+    /**
+     * Foto actual del pool (contadores acumulados desde el arranque)
+     */
+    public Map<String, Object> instantanea(HikariPoolMXBean pool) {
+        long n = solicitudes.sum();
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("activas", pool.getActiveConnections());
+        metricas.put("libres", pool.getIdleConnections());
+        metricas.put("total", pool.getTotalConnections());
+        metricas.put("hilosEsperando", pool.getThreadsAwaitingConnection());
+        metricas.put("solicitudes", n);
+        metricas.put("esperaPromedioMs", n == 0 ? 0.0 : esperaTotalNanos.sum() / 1_000_000.0 / n);
+        metricas.put("esperaMaximaMs", esperaMaximaNanos.get() / 1_000_000.0);
+        metricas.put("usoPromedioMs", n == 0 ? 0.0 : (double) usoTotalMs.sum() / n);
+        metricas.put("usoMaximoMs", usoMaximoMs.get());
+        metricas.put("timeouts", timeouts.sum());
+        metricas.put("conexionesCreadas", creadas.sum());
+        return metricas;
+    }
+}
@@ -0,0 +1,218 @@
+package org.example.sparkytrivia.websocket;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * BITACORA DE EVENTOS DE UNA PARTIDA (solo se agrega al final)
+ *
+ * Todo lo que decide el juego queda en orden en segmentos binarios mapeados
+ * en memoria: escribir un evento es copiar unos bytes, sin llamadas al sistema.
+ *
+ * {directorio}/{codigoSala}/actual/000.seg, 001.seg...  partida en curso
+ * {directorio}/{codigoSala}/{finEpochMs}/                 partida terminada
+ * Al terminar, la carpeta se renombra: la siguiente partida de la sala
+ * empieza una bitacora nueva. Los segmentos no se recortan (Java 17 no
+ * permite liberar un mapeo a demanda y recortar un archivo mapeado es
+ * inseguro): lo que sigue al ultimo evento son ceros y la lectura se
+ * detiene en el primer tipo 0.
+ * Si el servidor se reinicia, la sala reanudada sigue en "actual" con un
+ * segmento nuevo.
+ *
+ * Evento: tipo (1 byte, 0 = fin del segmento), largo del contenido (short),
+ * epochMs (long), contenido (enteros de 4 bytes, textos como short + UTF-8):
+ *   0x01 PARTIDA       salaId, triviaId, totalPreguntas
+ *   0x02 PARTICIPANTE  participanteId, ordenUnion (long), puntaje, correctas, respondidas, nickname
+ *   0x03 PREGUNTA      preguntaIndex, preguntaId, limiteTiempo
+ *   0x04 RESPUESTA     participanteId, preguntaId, opcionId, rttMs (epochMs = recepcion en el servidor)
+ *   0x05 PUNTAJE       participanteId, preguntaId, tiempoMs, puntos, correcta (1 byte)
+ *   0x06 RANKING       n, [participanteId, puntaje]...
+ *   0x07 FIN
+ *   0x08 REANUDADA     preguntaIndex (despues de un reinicio)
+ *
+ * La lectura y la repeticion estan en ReproductorBitacora.
+ *
+ * Configuracion:
+ *   -Dsparky.bitacora.dir=...          (por defecto {java.io.tmpdir}/sparky-bitacora)
+ *   -Dsparky.bitacora.segmento=1048576 (bytes por segmento)
+ */
+public class BitacoraEventos {
+
+    public static final byte PARTIDA = 0x01;
+    public static final byte PARTICIPANTE = 0x02;
+    public static final byte PREGUNTA = 0x03;
+    public static final byte RESPUESTA = 0x04;
+    public static final byte PUNTAJE = 0x05;
+    public static final byte RANKING = 0x06;
+    public static final byte FIN = 0x07;
+    public static final byte REANUDADA = 0x08;
+
+    static final Path DIRECTORIO = Paths.get(System.getProperty("sparky.bitacora.dir",
+            Paths.get(System.getProperty("java.io.tmpdir"), "sparky-bitacora").toString()));
+    static final String ACTUAL = "actual";
+    static final int CABECERA = 1 + 2 + 8;
+
+    private static final int TAMANO_SEGMENTO = Integer.getInteger("sparky.bitacora.segmento", 1 << 20);
+
+    private final String codigoSala;
+    private final Path carpeta;
+    private MappedByteBuffer segmento;
+    private int numeroSegmento = -1;
+    private boolean activa = true;
+
+    public BitacoraEventos(String codigoSala) {
+        this.codigoSala = codigoSala;
+        this.carpeta = DIRECTORIO.resolve(codigoSala).resolve(ACTUAL);
+    }
+
+    public synchronized void partida(int salaId, int triviaId, int totalPreguntas) {
+        if (reservar(PARTIDA, System.currentTimeMillis(), 12)) {
+            segmento.putInt(salaId).putInt(triviaId).putInt(totalPreguntas);
+        }
+    }
+
+    public synchronized void participante(int participanteId, String nickname, long ordenUnion,
+                                          int puntaje, int correctas, int respondidas) {
+        byte[] nick = (nickname != null ? nickname : "").getBytes(StandardCharsets.UTF_8);
+        if (reservar(PARTICIPANTE, System.currentTimeMillis(), 4 + 8 + 12 + 2 + nick.length)) {
+            segmento.putInt(participanteId).putLong(ordenUnion)
+                    .putInt(puntaje).putInt(correctas).putInt(respondidas)
+                    .putShort((short) nick.length).put(nick);
+        }
+    }
+
+    public synchronized void pregunta(int preguntaIndex, int preguntaId, int limiteTiempo) {
+        if (reservar(PREGUNTA, System.currentTimeMillis(), 12)) {
+            segmento.putInt(preguntaIndex).putInt(preguntaId).putInt(limiteTiempo);
+        }
+    }
+
+    /**
+     * @param recibidaEpochMs momento en que el servidor recibio la respuesta
+     */
+    public synchronized void respuesta(long recibidaEpochMs, int participanteId, int preguntaId,
+                                       int opcionId, int rttMs) {
+        if (reservar(RESPUESTA, recibidaEpochMs, 16)) {
+            segmento.putInt(participanteId).putInt(preguntaId).putInt(opcionId).putInt(rttMs);
+        }
+    }
+
+    public synchronized void puntaje(int participanteId, int preguntaId, int tiempoMs, int puntos,
+                                     boolean correcta) {
+        if (reservar(PUNTAJE, System.currentTimeMillis(), 17)) {
+            segmento.putInt(participanteId).putInt(preguntaId).putInt(tiempoMs).putInt(puntos)
+                    .put((byte) (correcta ? 1 : 0));
+        }
+    }
+
+    public synchronized void ranking(List<Integer> top, Marcador marcador) {
+        if (reservar(RANKING, System.currentTimeMillis(), 4 + top.size() * 8)) {
+            segmento.putInt(top.size());
+            for (Integer participanteId : top) {
+                segmento.putInt(participanteId).putInt(marcador.obtener(participanteId).getPuntaje());
+            }
+        }
+    }
+
+    public synchronized void reanudada(int preguntaIndex) {
+        if (reservar(REANUDADA, System.currentTimeMillis(), 4)) {
+            segmento.putInt(preguntaIndex);
+        }
+    }
+
+    /**
+     * Partida interrumpida (error o apagado): cerrar el segmento sin evento FIN
+     * y dejar la carpeta como actual para que la reanudacion siga escribiendo en ella
+     */
+    public synchronized void suspender() {
+        cerrarSegmento();
+        activa = false;
+    }
+
+    /**
+     * Evento FIN y rotacion: cerrar el ultimo segmento y archivar la carpeta.
+     * El renombre es de la carpeta; los archivos no se tocan (el canal ya esta
+     * cerrado y el buffer no se vuelve a usar)
+     */
+    public synchronized void finalizar() {
+        reservar(FIN, System.currentTimeMillis(), 0);
+        cerrarSegmento();
+        activa = false;
+        try {
+            if (Files.exists(carpeta)) {
+                Path destino = carpeta.resolveSibling(String.valueOf(System.currentTimeMillis()));
+                Files.move(carpeta, destino);
+                System.out.println("[GAME:" + codigoSala + "] Bitacora archivada en " + destino);
+            }
+        } catch (IOException e) {
+            logError("No se pudo archivar la bitacora: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Escribir la cabecera de un evento, abriendo otro segmento si no cabe
+     *
+     * @return false si la bitacora quedo desactivada por un error de disco
+     */
+    private boolean reservar(byte tipo, long epochMs, int largo) {
+        if (!activa) {
+            return false;
+        }
+        int total = CABECERA + largo;
+        try {
+            if (segmento == null || segmento.remaining() < total) {
+                abrirSegmento(total);
+            }
+        } catch (IOException e) {
+            // Sin bitacora el juego sigue igual
+            activa = false;
+            logError("Bitacora desactivada: " + e.getMessage());
+            return false;
+        }
+        segmento.put(tipo).putShort((short) largo).putLong(epochMs);
+        return true;
+    }
+
+    private void abrirSegmento(int minimo) throws IOException {
+        cerrarSegmento();
+        if (numeroSegmento < 0) {
+            Files.createDirectories(carpeta);
+            // Partida reanudada: continuar despues de los segmentos que ya existen
+            try (Stream<Path> existentes = Files.list(carpeta)) {
+                numeroSegmento = (int) existentes.filter(p -> p.toString().endsWith(".seg")).count();
+            }
+        }
+
+        Path archivoSegmento = carpeta.resolve(String.format("%03d.seg", numeroSegmento++));
+        // El mapeo sigue valido con el canal cerrado: no queda ningun descriptor abierto
+        try (FileChannel canal = FileChannel.open(archivoSegmento, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segmento = canal.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(TAMANO_SEGMENTO, minimo));
+        }
+    }
+
+    /**
+     * Forzar a disco lo escrito y soltar el buffer. El archivo queda del
+     * tamano del segmento: no se recorta ni se vuelve a abrir mientras el
+     * mapeo pueda seguir vivo (se libera cuando el GC recoge el buffer)
+     */
+    private void cerrarSegmento() {
+        if (segmento == null) {
+            return;
+        }
+        segmento.force();
+        segmento = null;
+    }
+
+    private void logError(String mensaje) {
+        System.err.println("[GAME:" + codigoSala + "] ERROR: " + mensaje);
+    }
+}
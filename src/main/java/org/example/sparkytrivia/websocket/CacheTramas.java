@@ -0,0 +1,112 @@
+package org.example.sparkytrivia.websocket;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * CACHE GLOBAL DE TRAMAS YA CODIFICADAS
+ *
+ * Cuando muchas salas juegan la misma trivia, los mensajes PREGUNTA y
+ * RESPUESTA_CORRECTA son identicos. Se serializan una sola vez por proceso
+ * (clave: triviaId + preguntaId + version de la trivia en esta cache) y todas
+ * las salas envian la misma trama (en JSON y en el protocolo binario).
+ *
+ * PreguntaService invalida la trivia al crear, editar, reordenar o eliminar preguntas:
+ * la version sube y las tramas viejas se borran. Quien arma un snapshot toma la
+ * version ANTES de leer las preguntas; si una invalidacion llega mientras tanto,
+ * lo que guarde queda con la version vieja y ningun snapshot nuevo lo usa.
+ */
+public final class CacheTramas {
+
+    // Tope: al llenarse Caffeine desaloja las tramas menos usadas (no se vacia entera)
+    private static final int MAX_TRAMAS = Integer.getInteger("sparky.cache.tramas.max", 10000);
+
+    private static final Cache<Clave, Trama> tramas = Caffeine.newBuilder()
+            .maximumSize(MAX_TRAMAS)
+            .build();
+
+    // triviaId -> version actual (sin entrada = 0)
+    private static final Map<Integer, Long> versiones = new ConcurrentHashMap<>();
+
+    private CacheTramas() {
+    }
+
+    /**
+     * Version actual de las tramas de una trivia: leerla antes de cargar sus preguntas
+     */
+    public static long version(int triviaId) {
+        return versiones.getOrDefault(triviaId, 0L);
+    }
+
+    /**
+     * Obtener la trama de la cache o codificarla con el serializador
+     *
+     * @param version la de version(triviaId) tomada antes de leer la pregunta de la BD
+     */
+    public static Trama obtener(int triviaId, int preguntaId, long version,
+                                String tipo, Supplier<String> serializador, Supplier<byte[]> binario) {
+        Clave clave = new Clave(triviaId, preguntaId, version, tipo);
+        return tramas.get(clave, k -> new Trama(serializador.get(), binario.get()));
+    }
+
+    /**
+     * Subir la version de una trivia y eliminar sus tramas (sus preguntas cambiaron)
+     */
+    public static void invalidarTrivia(Integer triviaId) {
+        if (triviaId == null) {
+            return;
+        }
+        versiones.merge(triviaId, 1L, Long::sum);
+        tramas.asMap().keySet().removeIf(clave -> clave.triviaId() == triviaId);
+    }
+
+    public static long size() {
+        return tramas.estimatedSize();
+    }
+
+    /**
+     * Mensaje codificado una vez: texto JSON para sendText y,
+     * si existe, la trama del protocolo binario (ProtocoloBinario)
+     */
+    public static final class Trama {
+        private final String texto;
+        private final ByteBuffer binario;
+
+        Trama(String texto, byte[] binario) {
+            this.texto = texto;
+            this.binario = binario == null ? null : ByteBuffer.wrap(binario).asReadOnlyBuffer();
+        }
+
+        public String getTexto() {
+            return texto;
+        }
+
+        public boolean tieneBinario() {
+            return binario != null;
+        }
+
+        /**
+         * Vista propia de la trama binaria (cada envio necesita su propia posicion)
+         */
+        public ByteBuffer getBinario() {
+            return binario.duplicate();
+        }
+
+        public int getLongitudTexto() {
+            return texto.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        public int getLongitudBinario() {
+            return binario == null ? 0 : binario.capacity();
+        }
+    }
+
+    private record Clave(int triviaId, int preguntaId, long version, String tipo) {
+    }
+}
@@ -0,0 +1,320 @@
+package org.example.sparkytrivia.websocket;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * COLA DE SALIDA DE UNA SESION WEBSOCKET
+ *
+ * Los broadcasts solo encolan (O(1)) y regresan: el envio real se hace con
+ * getAsyncRemote, con un solo mensaje en vuelo por sesion (el contenedor no
+ * permite dos envios simultaneos sobre la misma Session). Cuando termina un
+ * envio, el callback manda el siguiente.
+ *
+ * Un cliente lento solo llena SU cola. Al llenarse se aplica la politica
+ * configurada con -Dsparky.ws.cola.politica:
+ *
+ * - descartar:   se tira el mensaje no critico mas viejo
+ * - fusionar:    un RANKING nuevo reemplaza al RANKING pendiente (por defecto),
+ *                si no hay ninguno se descarta como en "descartar"
+ * - desconectar: se cierra la sesion (el cliente reconecta y recibe el estado completo)
+ *
+ * Tamano maximo con -Dsparky.ws.cola.max=N (por defecto 256)
+ *
+ * Acepta texto (JSON) o tramas binarias (ProtocoloBinario).
+ *
+ * despedir() manda un ultimo mensaje por la misma cola y cierra la sesion
+ * cuando termina de enviarse (nunca dos envios a la vez sobre la Session).
+ */
+public class ColaSalida {
+
+    /**
+     * Importancia del mensaje para la politica de cola llena
+     */
+    public enum Clase {
+        CRITICO,   // PREGUNTA, RESPUESTA_CORRECTA, inicio/fin de juego: nunca se descartan
+        NORMAL,    // chat, avisos, confirmaciones
+        RANKING    // solo importa el mas reciente
+    }
+
+    public enum Politica {
+        DESCARTAR, FUSIONAR, DESCONECTAR;
+
+        static Politica desdeConfiguracion() {
+            String valor = System.getProperty("sparky.ws.cola.politica", "fusionar").trim().toLowerCase();
+            switch (valor) {
+                case "descartar":
+                    return DESCARTAR;
+                case "desconectar":
+                    return DESCONECTAR;
+                case "fusionar":
+                    return FUSIONAR;
+                default:
+                    System.err.println("[WS] Politica de cola desconocida '" + valor + "', usando fusionar");
+                    return FUSIONAR;
+            }
+        }
+    }
+
+    private static final int MAX_MENSAJES = Integer.getInteger("sparky.ws.cola.max", 256);
+    private static final Politica POLITICA = Politica.desdeConfiguracion();
+
+    private final Session session;
+    private final ArrayDeque<Saliente> pendientes = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean enVuelo;
+    private boolean cerrada;
+    private long descartados;
+    // Razon de cierre tras enviar la despedida (null = sin despedida en curso)
+    private CloseReason despedida;
+
+    public ColaSalida(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * Encolar un mensaje; si no hay envio en curso, arranca el envio
+     */
+    public void encolar(String texto, Clase clase) {
+        encolar(new Saliente(texto, null, clase));
+    }
+
+    /**
+     * Encolar una trama binaria (cada llamada con su propio ByteBuffer)
+     */
+    public void encolar(ByteBuffer binario, Clase clase) {
+        encolar(new Saliente(null, binario, clase));
+    }
+
+    private void encolar(Saliente nuevo) {
+        Saliente siguiente = null;
+        boolean desconectar = false;
+
+        lock.lock();
+        try {
+            if (cerrada) {
+                return;
+            }
+            if (pendientes.size() < MAX_MENSAJES) {
+                pendientes.addLast(nuevo);
+            } else if (POLITICA == Politica.FUSIONAR && nuevo.clase == Clase.RANKING && fusionarRanking(nuevo)) {
+                descartados++;
+            } else if (POLITICA != Politica.DESCONECTAR && descartarNoCritico()) {
+                descartados++;
+                pendientes.addLast(nuevo);
+            } else {
+                desconectar = true;
+                cerrada = true;
+                pendientes.clear();
+            }
+            if (!desconectar && !enVuelo) {
+                siguiente = pendientes.pollFirst();
+                enVuelo = siguiente != null;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (desconectar) {
+            desconectar();
+        } else if (siguiente != null) {
+            enviar(siguiente);
+        }
+    }
+
+    /**
+     * Ultimo mensaje de la sesion (CRITICO): se descarta lo pendiente, se envia
+     * detras del envio en curso y al terminar se cierra la sesion con la razon dada.
+     * Despues de esto ya no se encola nada
+     */
+    public void despedir(String texto, CloseReason razon) {
+        Saliente siguiente = null;
+
+        lock.lock();
+        try {
+            if (cerrada) {
+                return;
+            }
+            cerrada = true;
+            despedida = razon;
+            pendientes.clear();
+            Saliente ultimo = new Saliente(texto, null, Clase.CRITICO);
+            if (enVuelo) {
+                pendientes.addLast(ultimo);
+            } else {
+                siguiente = ultimo;
+                enVuelo = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (siguiente != null) {
+            enviar(siguiente);
+        }
+    }
+
+    /**
+     * Reemplazar el RANKING pendiente por el nuevo, en su mismo lugar (lock tomado)
+     */
+    private boolean fusionarRanking(Saliente nuevo) {
+        for (Saliente s : pendientes) {
+            if (s.clase == Clase.RANKING) {
+                s.texto = nuevo.texto;
+                s.binario = nuevo.binario;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tirar el mensaje no critico mas viejo (lock tomado)
+     *
+     * @return false si todo lo pendiente es critico: el cliente no esta leyendo
+     */
+    private boolean descartarNoCritico() {
+        Iterator<Saliente> it = pendientes.iterator();
+        while (it.hasNext()) {
+            if (it.next().clase != Clase.CRITICO) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void enviar(Saliente mensaje) {
+        try {
+            if (mensaje.binario != null) {
+                session.getAsyncRemote().sendBinary(mensaje.binario, this::alTerminar);
+            } else {
+                session.getAsyncRemote().sendText(mensaje.texto, this::alTerminar);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[WS] Error enviando a sesion " + session.getId() + ": " + e.getMessage());
+            envioFallido();
+        }
+    }
+
+    /**
+     * Callback del contenedor al terminar un envio: mandar el siguiente
+     */
+    private void alTerminar(SendResult resultado) {
+        if (!resultado.isOK()) {
+            System.err.println("[WS] Envio fallido a sesion " + session.getId() + ": " +
+                    resultado.getException().getMessage());
+            envioFallido();
+            return;
+        }
+
+        Saliente siguiente;
+        CloseReason cierre = null;
+        lock.lock();
+        try {
+            // Ya cerrada solo queda por enviar la despedida, si la hay
+            siguiente = cerrada && despedida == null ? null : pendientes.pollFirst();
+            enVuelo = siguiente != null;
+            if (siguiente == null && despedida != null) {
+                cierre = despedida;
+                despedida = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (siguiente != null) {
+            enviar(siguiente);
+        } else if (cierre != null) {
+            cerrarSesion(cierre);
+        }
+    }
+
+    /**
+     * Un envio fallo: descartar todo y, si habia despedida, cerrar la sesion sin ella
+     */
+    private void envioFallido() {
+        CloseReason cierre;
+        lock.lock();
+        try {
+            cerrada = true;
+            enVuelo = false;
+            pendientes.clear();
+            cierre = despedida;
+            despedida = null;
+        } finally {
+            lock.unlock();
+        }
+
+        if (cierre != null) {
+            cerrarSesion(cierre);
+        }
+    }
+
+    private void desconectar() {
+        System.err.println("[WS] Cola de salida llena, desconectando sesion " + session.getId());
+        cerrarSesion(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Cliente demasiado lento"));
+    }
+
+    private void cerrarSesion(CloseReason razon) {
+        try {
+            session.close(razon);
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("[WS] Error cerrando sesion " + session.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Descartar lo pendiente (la sesion se cerro). Una despedida en curso
+     * no se descarta: termina de enviarse y cierra la sesion
+     */
+    public void cerrar() {
+        lock.lock();
+        try {
+            cerrada = true;
+            if (despedida == null) {
+                enVuelo = false;
+                pendientes.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return pendientes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDescartados() {
+        lock.lock();
+        try {
+            return descartados;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Saliente {
+        private String texto;
+        private ByteBuffer binario;
+        private final Clase clase;
+
+        Saliente(String texto, ByteBuffer binario, Clase clase) {
+            this.texto = texto;
+            this.binario = binario;
+            this.clase = clase;
+        }
+    }
+}
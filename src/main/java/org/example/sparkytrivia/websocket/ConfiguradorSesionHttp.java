@@ -0,0 +1,32 @@
+package org.example.sparkytrivia.websocket;
+
+import jakarta.servlet.http.HttpSession;
+import jakarta.websocket.HandshakeResponse;
+import jakarta.websocket.server.HandshakeRequest;
+import jakarta.websocket.server.ServerEndpointConfig;
+
+/**
+ * IDENTIDAD DEL USUARIO EN EL HANDSHAKE DEL WEBSOCKET
+ *
+ * Copia el usuarioId de la sesion HTTP (la del login) a las propiedades
+ * de la sesion WebSocket. El UNIRSE del cliente ya no decide quien es:
+ * su usuarioId se ignora si no coincide con este.
+ */
+public class ConfiguradorSesionHttp extends ServerEndpointConfig.Configurator {
+
+    public static final String USUARIO_ID = "usuarioId";
+
+    @Override
+    public void modifyHandshake(ServerEndpointConfig config, HandshakeRequest request, HandshakeResponse response) {
+        // Copia propia de cada sesion WebSocket (no se comparte entre conexiones)
+        config.getUserProperties().remove(USUARIO_ID);
+
+        Object httpSession = request.getHttpSession();
+        if (httpSession instanceof HttpSession sesion) {
+            Object usuarioId = sesion.getAttribute(USUARIO_ID);
+            if (usuarioId instanceof Integer) {
+                config.getUserProperties().put(USUARIO_ID, usuarioId);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.sparkytrivia.websocket;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto de int con direccionamiento abierto (sin Integer ni nodos)
+ *
+ * Lo usa un solo consumidor por sala para descartar respuestas duplicadas,
+ * por eso no es thread-safe.
+ */
+public class ConjuntoEnteros {
+
+    private static final int VACIO = Integer.MIN_VALUE;
+
+    private int[] tabla;
+    private int size;
+
+    public ConjuntoEnteros(int capacidadEsperada) {
+        int capacidad = 16;
+        while (capacidad < capacidadEsperada * 2) {
+            capacidad <<= 1;
+        }
+        tabla = new int[capacidad];
+        Arrays.fill(tabla, VACIO);
+    }
+
+    /**
+     * @return true si el valor no estaba y se agrego
+     */
+    public boolean agregar(int valor) {
+        if (valor == VACIO) {
+            throw new IllegalArgumentException("Valor reservado: " + valor);
+        }
+        if ((size + 1) * 2 > tabla.length) {
+            crecer();
+        }
+        int mascara = tabla.length - 1;
+        int i = mezclar(valor) & mascara;
+        while (tabla[i] != VACIO) {
+            if (tabla[i] == valor) {
+                return false;
+            }
+            i = (i + 1) & mascara;
+        }
+        tabla[i] = valor;
+        size++;
+        return true;
+    }
+
+    public boolean contiene(int valor) {
+        int mascara = tabla.length - 1;
+        int i = mezclar(valor) & mascara;
+        while (tabla[i] != VACIO) {
+            if (tabla[i] == valor) {
+                return true;
+            }
+            i = (i + 1) & mascara;
+        }
+        return false;
+    }
+
+    public void limpiar() {
+        Arrays.fill(tabla, VACIO);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void crecer() {
+        int[] anterior = tabla;
+        tabla = new int[anterior.length * 2];
+        Arrays.fill(tabla, VACIO);
+        size = 0;
+        for (int valor : anterior) {
+            if (valor != VACIO) {
+                agregar(valor);
+            }
+        }
+    }
+
+    private static int mezclar(int valor) {
+        int h = valor * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
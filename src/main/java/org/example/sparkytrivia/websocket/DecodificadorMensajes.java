@@ -0,0 +1,313 @@
+package org.example.sparkytrivia.websocket;
+
+import jakarta.websocket.DecodeException;
+import jakarta.websocket.Decoder;
+
+/**
+ * DECODIFICADOR DE LOS MENSAJES DEL CLIENTE
+ *
+ * Recorre el JSON una sola vez, campo por campo, y llena directamente el
+ * record que corresponde al "tipo". No arma un arbol JsonObject ni crea
+ * Strings para los nombres de campo o los numeros: solo se crean los textos
+ * que el record guarda (nickname, mensaje de chat).
+ *
+ * El PING (cada 5 segundos por cliente) se reconoce comparando el texto,
+ * sin parsear nada.
+ */
+public class DecodificadorMensajes implements Decoder.Text<MensajeCliente> {
+
+    // Lo que produce JSON.stringify({ tipo: 'PING' }) en el navegador
+    private static final String PING = "{\"tipo\":\"PING\"}";
+
+    private static final String[] TIPOS_CONOCIDOS = {"RESPUESTA", "PING", "ECO", "UNIRSE", "CHAT"};
+
+    @Override
+    public MensajeCliente decode(String texto) throws DecodeException {
+        if (PING.equals(texto)) {
+            return MensajeCliente.Ping.INSTANCIA;
+        }
+        try {
+            return new Lector(texto).leerMensaje();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new DecodeException(texto, "Mensaje mal formado: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean willDecode(String texto) {
+        return texto != null;
+    }
+
+    /**
+     * Lector de un objeto JSON plano (un nivel; los valores anidados se saltan)
+     */
+    private static final class Lector {
+        private final String texto;
+        private int pos;
+
+        Lector(String texto) {
+            this.texto = texto;
+        }
+
+        MensajeCliente leerMensaje() {
+            String tipo = null;
+            int usuarioId = 0;
+            Integer participanteId = null;
+            int preguntaId = -1;
+            int opcionId = -1;
+            int tiempoTomado = 0;
+            long ts = 0;
+            String nickname = null;
+            String mensaje = null;
+
+            esperar('{');
+            saltarEspacios();
+            if (actual() == '}') {
+                throw new IllegalArgumentException("Mensaje sin tipo");
+            }
+            while (true) {
+                // Nombre del campo: se compara en el texto, sin crear un String
+                esperar('"');
+                int inicio = pos;
+                int fin = texto.indexOf('"', inicio);
+                pos = fin + 1;
+                esperar(':');
+                saltarEspacios();
+
+                if (texto.startsWith("null", pos)) {
+                    pos += 4;
+                } else if (campo("tipo", inicio, fin)) {
+                    tipo = leerTipo();
+                    if ("PING".equals(tipo)) {
+                        return MensajeCliente.Ping.INSTANCIA;
+                    }
+                } else if (campo("participanteId", inicio, fin)) {
+                    participanteId = leerEntero();
+                } else if (campo("preguntaId", inicio, fin)) {
+                    preguntaId = leerEntero();
+                } else if (campo("opcionId", inicio, fin)) {
+                    opcionId = leerEntero();
+                } else if (campo("tiempoTomado", inicio, fin)) {
+                    tiempoTomado = leerEntero();
+                } else if (campo("usuarioId", inicio, fin)) {
+                    usuarioId = leerEntero();
+                } else if (campo("ts", inicio, fin)) {
+                    ts = leerNumero();
+                } else if (campo("nickname", inicio, fin)) {
+                    nickname = leerCadena();
+                } else if (campo("mensaje", inicio, fin)) {
+                    mensaje = leerCadena();
+                } else {
+                    saltarValor();
+                }
+
+                saltarEspacios();
+                char c = texto.charAt(pos++);
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw new IllegalArgumentException("Se esperaba ',' en " + (pos - 1));
+                }
+                saltarEspacios();
+            }
+
+            if (tipo == null) {
+                throw new IllegalArgumentException("Mensaje sin tipo");
+            }
+            switch (tipo) {
+                case "RESPUESTA":
+                    if (participanteId == null || preguntaId < 0 || opcionId < 0) {
+                        throw new IllegalArgumentException("Respuesta incompleta");
+                    }
+                    return new MensajeCliente.Respuesta(participanteId, preguntaId, opcionId, tiempoTomado);
+                case "ECO":
+                    return new MensajeCliente.Eco(ts);
+                case "UNIRSE":
+                    return new MensajeCliente.Unirse(usuarioId, nickname, participanteId);
+                case "CHAT":
+                    return new MensajeCliente.Chat(mensaje);
+                default:
+                    return new MensajeCliente.Desconocido(tipo);
+            }
+        }
+
+        private boolean campo(String nombre, int inicio, int fin) {
+            return fin - inicio == nombre.length() && texto.startsWith(nombre, inicio);
+        }
+
+        /**
+         * Los tipos conocidos se devuelven como constantes (sin crear Strings)
+         */
+        private String leerTipo() {
+            if (actual() != '"') {
+                throw new IllegalArgumentException("Se esperaba '\"' en " + pos);
+            }
+            for (String conocido : TIPOS_CONOCIDOS) {
+                int fin = pos + 1 + conocido.length();
+                if (texto.startsWith(conocido, pos + 1) && fin < texto.length() && texto.charAt(fin) == '"') {
+                    pos = fin + 1;
+                    return conocido;
+                }
+            }
+            return leerCadena();
+        }
+
+        /**
+         * Numero que debe caber en un int: un id fuera de rango no se trunca en silencio
+         */
+        private int leerEntero() {
+            long valor = leerNumero();
+            if (valor < Integer.MIN_VALUE || valor > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Numero fuera de rango en " + pos);
+            }
+            return (int) valor;
+        }
+
+        /**
+         * Entero, tambien entre comillas ("12") como lo aceptaba Gson
+         * Con parte decimal se trunca; con exponente o mas de 18 digitos se rechaza
+         */
+        private long leerNumero() {
+            boolean entreComillas = actual() == '"';
+            if (entreComillas) {
+                pos++;
+            }
+            boolean negativo = false;
+            if (actual() == '-') {
+                negativo = true;
+                pos++;
+            }
+            long valor = 0;
+            int inicio = pos;
+            while (pos < texto.length() && texto.charAt(pos) >= '0' && texto.charAt(pos) <= '9') {
+                valor = valor * 10 + (texto.charAt(pos++) - '0');
+            }
+            if (pos == inicio) {
+                throw new IllegalArgumentException("Se esperaba un numero en " + pos);
+            }
+            if (pos - inicio > 18) {
+                throw new IllegalArgumentException("Numero fuera de rango en " + inicio);
+            }
+            // Parte decimal: se ignora (los campos son enteros)
+            if (pos < texto.length() && texto.charAt(pos) == '.') {
+                pos++;
+                while (pos < texto.length() && texto.charAt(pos) >= '0' && texto.charAt(pos) <= '9') {
+                    pos++;
+                }
+            }
+            if (pos < texto.length() && (texto.charAt(pos) == 'e' || texto.charAt(pos) == 'E')) {
+                throw new IllegalArgumentException("Exponente no soportado en " + pos);
+            }
+            if (entreComillas) {
+                esperar('"');
+            }
+            return negativo ? -valor : valor;
+        }
+
+        private String leerCadena() {
+            esperar('"');
+            int inicio = pos;
+            while (true) {
+                char c = texto.charAt(pos);
+                if (c == '"') {
+                    pos++;
+                    return texto.substring(inicio, pos - 1);
+                }
+                if (c == '\\') {
+                    return leerCadenaEscapada(inicio);
+                }
+                pos++;
+            }
+        }
+
+        /**
+         * Camino lento: solo cuando el texto trae secuencias de escape
+         */
+        private String leerCadenaEscapada(int inicio) {
+            StringBuilder sb = new StringBuilder(texto.length() - inicio);
+            sb.append(texto, inicio, pos);
+            while (true) {
+                char c = texto.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char e = texto.charAt(pos++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        sb.append((char) Integer.parseInt(texto.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(e); // \" \\ \/
+                }
+            }
+        }
+
+        /**
+         * Saltar un valor que no interesa (incluidos objetos y arreglos anidados)
+         */
+        private void saltarValor() {
+            char c = actual();
+            if (c == '"') {
+                saltarCadena();
+                return;
+            }
+            if (c != '{' && c != '[') {
+                while (pos < texto.length() && ",}] \t\r\n".indexOf(texto.charAt(pos)) < 0) {
+                    pos++;
+                }
+                return;
+            }
+            int profundidad = 0;
+            do {
+                c = texto.charAt(pos);
+                if (c == '"') {
+                    saltarCadena();
+                    continue;
+                }
+                if (c == '{' || c == '[') profundidad++;
+                if (c == '}' || c == ']') profundidad--;
+                pos++;
+            } while (profundidad > 0);
+        }
+
+        private void saltarCadena() {
+            pos++;
+            while (true) {
+                char c = texto.charAt(pos++);
+                if (c == '\\') {
+                    pos++;
+                } else if (c == '"') {
+                    return;
+                }
+            }
+        }
+
+        private void esperar(char esperado) {
+            saltarEspacios();
+            if (texto.charAt(pos) != esperado) {
+                throw new IllegalArgumentException("Se esperaba '" + esperado + "' en " + pos);
+            }
+            pos++;
+        }
+
+        private char actual() {
+            return texto.charAt(pos);
+        }
+
+        private void saltarEspacios() {
+            while (pos < texto.length() && Character.isWhitespace(texto.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
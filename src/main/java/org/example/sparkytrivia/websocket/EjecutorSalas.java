@@ -0,0 +1,210 @@
+package org.example.sparkytrivia.websocket;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EJECUTOR DE LAS FASES DE LAS SALAS
+ *
+ * GameEngine solo lleva los tiempos; el trabajo de cada fase (consultas a BD,
+ * broadcast) corre en este ejecutor. Se elige con -Dsparky.salas.modo:
+ *
+ * - plataforma: un hilo de plataforma nuevo por fase (comportamiento original, por defecto),
+ *               con tope de hilos vivos -Dsparky.salas.plataforma.max=N
+ * - pool:       pool acotado de hilos de plataforma (-Dsparky.salas.pool=N)
+ * - virtual:    un hilo virtual por fase (requiere JDK 21+, si no cae a pool)
+ */
+public interface EjecutorSalas {
+
+    String PROPIEDAD_MODO = "sparky.salas.modo";
+
+    void ejecutar(Runnable tarea);
+
+    /**
+     * Nombre del modo para los logs
+     */
+    String getModo();
+
+    void apagar();
+
+    /**
+     * Crear el ejecutor segun la propiedad del sistema
+     */
+    static EjecutorSalas desdeConfiguracion() {
+        String modo = System.getProperty(PROPIEDAD_MODO, "plataforma").trim().toLowerCase();
+        switch (modo) {
+            case "plataforma":
+                return new Plataforma();
+            case "virtual":
+                EjecutorSalas virtual = Virtual.crear();
+                if (virtual != null) {
+                    return virtual;
+                }
+                System.err.println(" Hilos virtuales no disponibles en Java " +
+                        Runtime.version().feature() + ", usando pool");
+                return new Pool();
+            case "pool":
+                return new Pool();
+            default:
+                System.err.println(" Modo de salas desconocido '" + modo + "', usando plataforma");
+                return new Plataforma();
+        }
+    }
+
+    /**
+     * Un hilo de plataforma nuevo por tarea, como antes, pero con tope de hilos vivos:
+     * al llegar al tope las tareas esperan en cola y las toma el siguiente hilo que se crea
+     */
+    class Plataforma implements EjecutorSalas {
+        private final int maximo;
+        private final Semaphore cupos;
+        private final ConcurrentLinkedQueue<Runnable> espera = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger contador = new AtomicInteger(1);
+        private volatile boolean apagado;
+
+        Plataforma() {
+            this(Integer.getInteger("sparky.salas.plataforma.max", 256));
+        }
+
+        Plataforma(int maximo) {
+            this.maximo = maximo;
+            this.cupos = new Semaphore(maximo);
+        }
+
+        @Override
+        public void ejecutar(Runnable tarea) {
+            if (apagado) {
+                return;
+            }
+            if (cupos.tryAcquire()) {
+                arrancar(tarea);
+                return;
+            }
+            espera.offer(tarea);
+            // Un hilo pudo terminar entre el tryAcquire y el offer sin ver la tarea
+            tomarDeLaEspera();
+        }
+
+        private void arrancar(Runnable tarea) {
+            Thread t = new Thread(() -> {
+                try {
+                    tarea.run();
+                } finally {
+                    alTerminar();
+                }
+            }, "GameRoom-" + contador.getAndIncrement());
+            t.setDaemon(true);
+            t.start();
+        }
+
+        /**
+         * El cupo del hilo que termina pasa a la siguiente tarea en espera, si hay
+         */
+        private void alTerminar() {
+            Runnable siguiente = apagado ? null : espera.poll();
+            if (siguiente != null) {
+                arrancar(siguiente);
+                return;
+            }
+            cupos.release();
+            tomarDeLaEspera();
+        }
+
+        private void tomarDeLaEspera() {
+            if (!apagado && !espera.isEmpty() && cupos.tryAcquire()) {
+                Runnable siguiente = espera.poll();
+                if (siguiente != null) {
+                    arrancar(siguiente);
+                } else {
+                    cupos.release();
+                }
+            }
+        }
+
+        @Override
+        public String getModo() {
+            return "plataforma (un hilo por fase, hasta " + maximo + " a la vez)";
+        }
+
+        @Override
+        public void apagar() {
+            apagado = true;
+            espera.clear();
+        }
+    }
+
+    /**
+     * Pool acotado de hilos de plataforma compartido por todas las salas
+     */
+    class Pool implements EjecutorSalas {
+        private final int tamano;
+        private final ExecutorService pool;
+
+        Pool() {
+            this.tamano = Integer.getInteger("sparky.salas.pool",
+                    Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+            AtomicInteger contador = new AtomicInteger(1);
+            this.pool = Executors.newFixedThreadPool(tamano, r -> {
+                Thread t = new Thread(r, "GameRoom-" + contador.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        @Override
+        public void ejecutar(Runnable tarea) {
+            pool.execute(tarea);
+        }
+
+        @Override
+        public String getModo() {
+            return "pool (" + tamano + " hilos)";
+        }
+
+        @Override
+        public void apagar() {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Un hilo virtual por tarea. El proyecto compila para Java 17, por eso
+     * el ejecutor se obtiene por reflexion cuando se corre en JDK 21+
+     */
+    class Virtual implements EjecutorSalas {
+        private final ExecutorService ejecutor;
+
+        private Virtual(ExecutorService ejecutor) {
+            this.ejecutor = ejecutor;
+        }
+
+        static Virtual crear() {
+            try {
+                ExecutorService ejecutor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+                return new Virtual(ejecutor);
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void ejecutar(Runnable tarea) {
+            ejecutor.execute(tarea);
+        }
+
+        @Override
+        public String getModo() {
+            return "virtual";
+        }
+
+        @Override
+        public void apagar() {
+            ejecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.example.sparkytrivia.websocket;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * REPARTO PARALELO DE MENSAJES EN SALAS GRANDES
+ *
+ * Con pocas sesiones el broadcast recorre la sala en el mismo hilo.
+ * A partir de -Dsparky.fanout.umbral sesiones (por defecto 1000) las sesiones
+ * se parten en bloques y cada bloque se encola en paralelo en un pool del
+ * tamano de los nucleos (-Dsparky.fanout.hilos). Todos los bloques usan la
+ * misma trama ya codificada.
+ *
+ * El broadcast espera a que terminen todos los bloques: asi dos mensajes
+ * seguidos llegan a cada sesion en el mismo orden en que se enviaron.
+ *
+ * Guarda por sala la duracion de cada reparto (GameManager.imprimirEstado
+ * y GET /api/metricas).
+ */
+public final class FanOut {
+
+    private static final int UMBRAL = Integer.getInteger("sparky.fanout.umbral", 1000);
+    private static final int HILOS = Integer.getInteger("sparky.fanout.hilos",
+            Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService pool = crearPool();
+    private static final Map<String, Metrica> metricas = new ConcurrentHashMap<>();
+
+    private FanOut() {
+    }
+
+    private static ExecutorService crearPool() {
+        AtomicInteger contador = new AtomicInteger(1);
+        return Executors.newFixedThreadPool(HILOS, r -> {
+            Thread t = new Thread(r, "FanOut-" + contador.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Aplicar el envio a cada sesion de la sala, en paralelo si la sala es grande
+     *
+     * @return numero de bloques usados (1 = camino simple)
+     */
+    public static int repartir(String codigoSala, RegistroSesiones.Conexion[] sesiones,
+                               Consumer<RegistroSesiones.Conexion> envio) {
+        long inicio = System.nanoTime();
+        int bloques = 1;
+
+        if (sesiones.length < UMBRAL || HILOS < 2) {
+            enviarBloque(sesiones, 0, sesiones.length, envio);
+        } else {
+            bloques = HILOS;
+            int tamano = (sesiones.length + bloques - 1) / bloques;
+            CountDownLatch pendientes = new CountDownLatch(bloques - 1);
+
+            // El bloque 0 lo hace el hilo que llama; el resto, el pool
+            for (int b = 1; b < bloques; b++) {
+                int desde = Math.min(b * tamano, sesiones.length);
+                int hasta = Math.min(desde + tamano, sesiones.length);
+                pool.execute(() -> {
+                    try {
+                        enviarBloque(sesiones, desde, hasta, envio);
+                    } finally {
+                        pendientes.countDown();
+                    }
+                });
+            }
+            enviarBloque(sesiones, 0, Math.min(tamano, sesiones.length), envio);
+
+            try {
+                pendientes.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        metricas.computeIfAbsent(codigoSala, k -> new Metrica())
+                .registrar(System.nanoTime() - inicio, sesiones.length, bloques);
+        return bloques;
+    }
+
+    private static void enviarBloque(RegistroSesiones.Conexion[] sesiones, int desde, int hasta,
+                                     Consumer<RegistroSesiones.Conexion> envio) {
+        for (int i = desde; i < hasta; i++) {
+            try {
+                envio.accept(sesiones[i]);
+            } catch (RuntimeException e) {
+                System.err.println("[WS] Error enviando a sesion " + sesiones[i].getSessionId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public static Metrica getMetrica(String codigoSala) {
+        return metricas.get(codigoSala);
+    }
+
+    /**
+     * Configuracion y metricas de todas las salas, para MetricasServlet
+     */
+    public static Map<String, Object> getMetricas() {
+        Map<String, Object> porSala = new TreeMap<>();
+        metricas.forEach((codigoSala, metrica) -> porSala.put(codigoSala, metrica.instantanea()));
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("umbral", UMBRAL);
+        resultado.put("hilos", HILOS);
+        resultado.put("salas", porSala);
+        return resultado;
+    }
+
+    /**
+     * Olvidar las metricas de una sala que ya no tiene sesiones
+     */
+    public static void olvidar(String codigoSala) {
+        metricas.remove(codigoSala);
+    }
+
+    /**
+     * Duracion de los repartos de una sala
+     */
+    public static class Metrica {
+        private long repartos;
+        private long totalNanos;
+        private long maxNanos;
+        private long ultimoNanos;
+        private int ultimasSesiones;
+        private int ultimosBloques;
+
+        synchronized void registrar(long nanos, int sesiones, int bloques) {
+            repartos++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            ultimoNanos = nanos;
+            ultimasSesiones = sesiones;
+            ultimosBloques = bloques;
+        }
+
+        public synchronized double getUltimoMs() {
+            return ultimoNanos / 1_000_000.0;
+        }
+
+        public synchronized double getPromedioMs() {
+            return repartos == 0 ? 0 : totalNanos / 1_000_000.0 / repartos;
+        }
+
+        public synchronized double getMaximoMs() {
+            return maxNanos / 1_000_000.0;
+        }
+
+        public synchronized long getRepartos() {
+            return repartos;
+        }
+
+        synchronized Map<String, Object> instantanea() {
+            Map<String, Object> valores = new LinkedHashMap<>();
+            valores.put("repartos", repartos);
+            valores.put("ultimoMs", ultimoNanos / 1_000_000.0);
+            valores.put("promedioMs", getPromedioMs());
+            valores.put("maximoMs", maxNanos / 1_000_000.0);
+            valores.put("ultimasSesiones", ultimasSesiones);
+            valores.put("ultimosBloques", ultimosBloques);
+            return valores;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("fan-out: %d repartos, ultimo %.2f ms (%d sesiones, %d bloques), " +
+                            "promedio %.2f ms, max %.2f ms",
+                    repartos, ultimoNanos / 1_000_000.0, ultimasSesiones, ultimosBloques,
+                    getPromedioMs(), maxNanos / 1_000_000.0);
+        }
+    }
+}
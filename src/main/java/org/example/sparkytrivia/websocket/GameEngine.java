@@ -0,0 +1,95 @@
+package org.example.sparkytrivia.websocket;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MOTOR DE JUEGO COMPARTIDO
+ *
+ * Un solo ScheduledExecutorService con pocos hilos lleva los tiempos de TODAS
+ * las salas. Cada sala (GameRoomThread) es una maquina de estados que programa
+ * su siguiente fase aqui en lugar de dormir con Thread.sleep.
+ *
+ * El scheduler solo dispara: el trabajo de la fase corre en el EjecutorSalas
+ * configurado (plataforma, pool o virtual), asi una consulta lenta a la BD
+ * nunca retrasa los tiempos de otras salas.
+ *
+ * Numero de hilos del scheduler configurable con -Dsparky.engine.hilos=N
+ */
+public class GameEngine {
+
+    private static GameEngine instance;
+
+    private final ScheduledExecutorService scheduler;
+    private final EjecutorSalas ejecutor;
+    private final int hilos;
+
+    private GameEngine() {
+        this.hilos = Integer.getInteger("sparky.engine.hilos", 1);
+        this.scheduler = Executors.newScheduledThreadPool(hilos, new HilosMotor());
+        this.ejecutor = EjecutorSalas.desdeConfiguracion();
+        System.out.println(" GameEngine inicializado - scheduler: " + hilos +
+                " hilo(s), modo de ejecucion de salas: " + ejecutor.getModo());
+    }
+
+    public static synchronized GameEngine getInstance() {
+        if (instance == null) {
+            instance = new GameEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Ejecutar una tarea lo antes posible en el motor
+     */
+    public void ejecutar(Runnable tarea) {
+        ejecutor.ejecutar(tarea);
+    }
+
+    /**
+     * Programar una tarea despues de un retraso en milisegundos
+     */
+    public ScheduledFuture<?> programar(Runnable tarea, long retrasoMs) {
+        return scheduler.schedule(() -> ejecutor.ejecutar(tarea), retrasoMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Programar una tarea periodica (retraso inicial y periodo en milisegundos)
+     */
+    public ScheduledFuture<?> programarPeriodica(Runnable tarea, long retrasoMs, long periodoMs) {
+        return scheduler.scheduleWithFixedDelay(() -> ejecutor.ejecutar(tarea),
+                retrasoMs, periodoMs, TimeUnit.MILLISECONDS);
+    }
+
+    public int getHilos() {
+        return hilos;
+    }
+
+    public String getModoEjecucion() {
+        return ejecutor.getModo();
+    }
+
+    public void apagar() {
+        scheduler.shutdownNow();
+        ejecutor.apagar();
+        System.out.println(" GameEngine detenido");
+    }
+
+    /**
+     * Hilos daemon con nombre legible para los logs
+     */
+    private static class HilosMotor implements ThreadFactory {
+        private final AtomicInteger contador = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "GameEngine-" + contador.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.google.gson.JsonObject;
 import org.example.sparkytrivia.dao.SalaDAO;
 import org.example.sparkytrivia.model.Sala;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -12,7 +13,7 @@ public class GameManager {
     // Instancia única (Singleton)
     private static GameManager instance;
 
-    // Almacena los hilos activos para cada sala en juego
+    // Almacena el juego activo de cada sala (todas corren en GameEngine)
     private final Map<String, GameRoomThread> salasActivas;
 
     private final SalaDAO salaDAO;
@@ -53,14 +54,15 @@ public class GameManager {
             sala.setInicio(java.time.LocalDateTime.now());
             salaDAO.actualizar(sala);
 
-            // Crear y arrancar hilo de juego
+            // Crear la sala de juego y arrancarla en el motor compartido
             GameRoomThread gameThread = new GameRoomThread(sala);
-            Thread thread = new Thread(gameThread);
-            thread.setName("GameRoom-" + codigoSala);
-            thread.start();
-
-            // Guardar en mapa
             salasActivas.put(codigoSala, gameThread);
+            try {
+                gameThread.iniciar();
+            } catch (RuntimeException e) {
+                salasActivas.remove(codigoSala, gameThread);
+                throw e;
+            }
 
             System.out.println(" Partida iniciada en sala: " + codigoSala);
 
@@ -68,7 +70,7 @@ public class GameManager {
             JsonObject inicio = new JsonObject();
             inicio.addProperty("tipo", "PARTIDA_INICIADA");
             inicio.addProperty("mensaje", "¡La partida ha comenzado!");
-            GameWebSocket.broadcast(codigoSala, inicio.toString(), null);
+            GameWebSocket.broadcast(codigoSala, inicio.toString(), null, ColaSalida.Clase.CRITICO);
 
             return true;
 
@@ -80,6 +82,50 @@ public class GameManager {
     }
 
 
+    /**
+     * REANUDAR PARTIDAS INTERRUMPIDAS (al arrancar la aplicacion)
+     * Cada sala que quedo 'en_progreso' sigue desde su ultimo punto de control;
+     * si no tiene, desde la pregunta guardada en la BD con los contadores de la BD
+     *
+     * @return numero de salas reanudadas
+     */
+    public int reanudarSalasEnProgreso() {
+        List<Sala> salas;
+        try {
+            salas = salaDAO.listarEnProgreso();
+        } catch (Exception e) {
+            System.err.println(" No se pudieron buscar salas en progreso: " + e.getMessage());
+            return 0;
+        }
+
+        int reanudadas = 0;
+        for (Sala sala : salas) {
+            String codigoSala = sala.getCodigoSala();
+            if (salasActivas.containsKey(codigoSala)) {
+                continue;
+            }
+
+            PuntoControlSala.Registro registro = PuntoControlSala.leerUltimo(codigoSala);
+            if (registro == null) {
+                int preguntaActual = sala.getPreguntaActual() != null ? sala.getPreguntaActual() : 0;
+                registro = new PuntoControlSala.Registro(sala.getSalaId(), preguntaActual - 1, "BD", 0, 0, List.of());
+            }
+
+            try {
+                GameRoomThread gameThread = new GameRoomThread(sala, registro);
+                salasActivas.put(codigoSala, gameThread);
+                gameThread.iniciar();
+                reanudadas++;
+                System.out.println(" Partida reanudada en sala: " + codigoSala + " (punto de control: " +
+                        registro.fase() + ", pregunta " + (registro.preguntaIndex() + 1) + ")");
+            } catch (Exception e) {
+                salasActivas.remove(codigoSala);
+                System.err.println(" Error reanudando sala " + codigoSala + ": " + e.getMessage());
+            }
+        }
+        return reanudadas;
+    }
+
     public void finalizarTrivia(String codigoSala) {
         System.out.println(" Finalizando trivia en sala: " + codigoSala);
 
@@ -107,23 +153,84 @@ public class GameManager {
             JsonObject fin = new JsonObject();
             fin.addProperty("tipo", "PARTIDA_FINALIZADA");
             fin.addProperty("mensaje", "¡Partida finalizada!");
-            GameWebSocket.broadcast(codigoSala, fin.toString(), null);
+            GameWebSocket.broadcast(codigoSala, fin.toString(), null, ColaSalida.Clase.CRITICO);
 
         } else {
             System.out.println("️ No se encontró hilo activo para sala: " + codigoSala);
         }
     }
 
+    /**
+     * Apagado del servidor: detener todas las salas y vaciar su persistencia
+     * diferida mientras JPA sigue abierto. Sus puntos de control se conservan
+     */
+    public void apagarSalas() {
+        for (Map.Entry<String, GameRoomThread> entry : salasActivas.entrySet()) {
+            try {
+                entry.getValue().apagar();
+            } catch (Exception e) {
+                System.err.println(" Error apagando sala " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+        salasActivas.clear();
+    }
+
     public void procesarRespuesta(String codigoSala, JsonObject respuesta) {
+        procesarRespuesta(codigoSala, respuesta, 0);
+    }
+
+    /**
+     * @param rttMs ida y vuelta medido para la sesion (PING/PONG), para compensar la latencia
+     */
+    public void procesarRespuesta(String codigoSala, JsonObject respuesta, int rttMs) {
         GameRoomThread gameThread = salasActivas.get(codigoSala);
 
         if (gameThread != null) {
-            gameThread.recibirRespuesta(respuesta);
+            gameThread.recibirRespuesta(respuesta, rttMs);
+        } else {
+            System.err.println(" No hay juego activo en sala: " + codigoSala);
+        }
+    }
+
+    /**
+     * Respuesta ya decodificada por DecodificadorMensajes
+     */
+    public void procesarRespuesta(String codigoSala, MensajeCliente.Respuesta respuesta, int rttMs) {
+        GameRoomThread gameThread = salasActivas.get(codigoSala);
+
+        if (gameThread != null) {
+            gameThread.recibirRespuesta(respuesta, rttMs);
         } else {
             System.out.println(" No hay partida activa en sala: " + codigoSala);
         }
     }
 
+    /**
+     * El participante ya no tiene sesion viva (cerro o dejo de mandar latidos)
+     */
+    public void participanteDesconectado(String codigoSala, int participanteId) {
+        GameRoomThread gameThread = salasActivas.get(codigoSala);
+        if (gameThread != null) {
+            gameThread.participanteDesconectado(participanteId);
+        }
+    }
+
+    public void participanteConectado(String codigoSala, int participanteId) {
+        GameRoomThread gameThread = salasActivas.get(codigoSala);
+        if (gameThread != null) {
+            gameThread.participanteConectado(participanteId);
+        }
+    }
+
+    /**
+     * El participante es del usuario y juega en la partida activa de la sala
+     * (en memoria; sin partida activa no hay participante que validar)
+     */
+    public boolean esParticipanteDe(String codigoSala, int participanteId, int usuarioId) {
+        GameRoomThread gameThread = salasActivas.get(codigoSala);
+        return gameThread != null && gameThread.esParticipanteDe(participanteId, usuarioId);
+    }
+
     public boolean estaActiva(String codigoSala) {
         return salasActivas.containsKey(codigoSala);
     }
@@ -133,6 +240,16 @@ public class GameManager {
     }
 
 
+    /**
+     * Estado de una sala en juego para una sesion que se (re)conecta (REANUDAR)
+     *
+     * @return null si la sala no esta activa o aun no hay pregunta
+     */
+    public CacheTramas.Trama obtenerReanudacion(String codigoSala, int participanteId) {
+        GameRoomThread gameThread = salasActivas.get(codigoSala);
+        return gameThread != null ? gameThread.reanudacion(participanteId) : null;
+    }
+
     public void broadcast(String codigoSala, String mensaje) {
         GameWebSocket.broadcast(codigoSala, mensaje, null);
     }
@@ -177,6 +294,12 @@ public class GameManager {
             GameRoomThread thread = entry.getValue();
             System.out.println("  - " + entry.getKey() + ": " +
                     (thread.estaActivo() ? " ACTIVO" : " INACTIVO"));
+
+            FanOut.Metrica fanOut = FanOut.getMetrica(entry.getKey());
+            if (fanOut != null) {
+                System.out.println("      " + GameWebSocket.getConexionesActivas(entry.getKey()) +
+                        " conexiones, " + fanOut);
+            }
         }
     }
 }
\ No newline at end of file
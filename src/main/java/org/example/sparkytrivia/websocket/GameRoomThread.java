@@ -7,295 +7,506 @@ import org.example.sparkytrivia.dao.*;
 import org.example.sparkytrivia.model.*;
 import org.example.sparkytrivia.service.PuntajeService;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * HILO DE JUEGO PARA UNA SALA - VERSION CORREGIDA
+ * JUEGO DE UNA SALA - MAQUINA DE ESTADOS
+ *
+ * Ya no es un hilo propio: cada fase se programa en el GameEngine compartido
+ * COUNTDOWN -> PREGUNTA_ABIERTA -> PUNTUANDO -> REVELANDO -> RANKING -> PAUSA
+ * y se repite hasta la ultima pregunta.
  *
  * PROBLEMAS CORREGIDOS:
  * 1. Las respuestas no se guardaban porque el tiempo expiraba antes de recibirlas
  * 2. El ranking no se actualizaba porque registrarRespuesta no se llamaba
  * 3. Falta de logs para depuracion
  */
-public class GameRoomThread implements Runnable {
+public class GameRoomThread {
+
+    // Fases de la maquina de estados
+    enum Fase { CREADA, COUNTDOWN, PREGUNTA_ABIERTA, PUNTUANDO, REVELANDO, RANKING, PAUSA, FINALIZADA }
 
     private final Sala sala;
     private final String codigoSala;
     private volatile boolean activo = true;
     private final Gson gson = new Gson();
+    private final GameEngine motor = GameEngine.getInstance();
 
     // DAOs
     private final PreguntasDAO preguntasDAO = new PreguntasDAO();
-    private final OpcionesRespuestaDAO opcionesDAO = new OpcionesRespuestaDAO();
     private final ParticipantesDAO participantesDAO = new ParticipantesDAO();
-    private final RespuestasJugadorDAO respuestasDAO = new RespuestasJugadorDAO();
     private final SalaDAO salaDAO = new SalaDAO();
     private final PuntajeService puntajeService = new PuntajeService();
 
     // Estado del juego
-    private List<Preguntas> preguntas;
-    private final Map<Integer, JsonObject> respuestasPreguntaActual = new ConcurrentHashMap<>();
+    private GameSnapshot snapshot;
+
+    // Ingesta de respuestas: los hilos del contenedor solo encolan (sin bloqueo)
+    // y un unico consumidor en el motor valida, descarta duplicados y acepta
+    private final ConcurrentLinkedQueue<RespuestaRecibida> colaRespuestas = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drenadoProgramado = new AtomicBoolean(false);
+    private final ReentrantLock estadoPregunta = new ReentrantLock();
+    // Una fase a la vez y terminar() una sola vez: ejecutarFase corre cada fase con este lock
+    // tomado, asi terminar/apagar esperan a la fase en curso. Se toma antes que estadoPregunta.
+    // ReentrantLock y no synchronized: no fija el hilo virtual durante el I/O a disco
+    private final ReentrantLock terminando = new ReentrantLock();
+    private final ConjuntoEnteros yaRespondieron = new ConjuntoEnteros(64);
+    private final List<RespuestaRecibida> respuestasPreguntaActual = new ArrayList<>();
+    // participanteId -> opcion aceptada en la pregunta actual (para reanudar tras reconectar)
+    private final Map<Integer, Integer> opcionesAceptadas = new HashMap<>();
+
+    // Aviso "respondieron X/Y": a lo mucho uno cada INTERVALO_CONTEO ms por sala
+    private final AtomicBoolean conteoProgramado = new AtomicBoolean(false);
+    private volatile int respondieron;
+    private volatile int conteoEnviado;
     private final List<Participantes> participantes = new CopyOnWriteArrayList<>();
+    private final Map<Integer, Participantes> participantesPorId = new ConcurrentHashMap<>();
+
+    // Participantes sin sesion viva (cerraron o RuedaLatidos los expiro): no se les espera
+    private final Set<Integer> desconectados = ConcurrentHashMap.newKeySet();
+
+    // Marcador en memoria (fuente de verdad durante el juego) y su escritura diferida a BD
+    private final Marcador marcador = new Marcador();
+    private final PersistenciaDiferida persistencia;
+
+    // Punto de control en disco en cada cambio de fase, y desde donde reanudar (null = partida nueva)
+    private final PuntoControlSala puntoControl;
+    private final PuntoControlSala.Registro reanudarDesde;
+
+    // Bitacora de eventos de la partida (auditoria y repeticion, ver ReproductorBitacora)
+    private final BitacoraEventos bitacora;
 
     // Control de pregunta actual
     private volatile int preguntaActualIndex = -1;
     private volatile Integer preguntaActualId = null;
+    private volatile Fase fase = Fase.CREADA;
+
+    // participanteId -> posicion en el ultimo ranking enviado (vacio hasta el primero)
+    private volatile Map<Integer, Integer> posicionesAnteriores = new HashMap<>();
+
+    // Reloj monotono: momento en que se envio la pregunta actual
+    private volatile long aperturaNanos;
+
+    // Tarea pendiente en el motor (siguiente fase)
+    private volatile ScheduledFuture<?> tareaProgramada;
+
+    // Cierre por tiempo de la pregunta indiceCierre; ambos bajo estadoPregunta
+    private volatile ScheduledFuture<?> cierrePregunta;
+    private int indiceCierre = -1;
 
     // CONFIGURACION DE TIEMPOS (en milisegundos)
     private static final int ESPERA_INICIAL = 5000;       // 5 segundos para countdown del frontend
     private static final int BUFFER_LATENCIA = 5000;      // 5 segundos extra para latencia (aumentado)
     private static final int PAUSA_ENTRE_PREGUNTAS = 4000; // 4 segundos entre preguntas
+    private static final int MAX_COMPENSACION_RTT = 1000;  // tope para no premiar un RTT inflado
+    private static final int TOP_RANKING = 10;             // jugadores del ranking que ve toda la sala
+    private static final int INTERVALO_CONTEO = 250;       // agrupar avisos de "X/Y respondieron"
 
     public GameRoomThread(Sala sala) {
+        this(sala, null);
+    }
+
+    /**
+     * @param reanudarDesde punto de control de una partida interrumpida (reinicio del servidor)
+     */
+    public GameRoomThread(Sala sala, PuntoControlSala.Registro reanudarDesde) {
         this.sala = sala;
         this.codigoSala = sala.getCodigoSala();
+        this.persistencia = new PersistenciaDiferida(codigoSala);
+        this.puntoControl = new PuntoControlSala(codigoSala);
+        this.reanudarDesde = reanudarDesde;
+        this.bitacora = new BitacoraEventos(codigoSala);
         log("GameRoomThread creado para sala: " + codigoSala);
     }
 
-    @Override
-    public void run() {
+    /**
+     * ARRANCAR LA SALA EN EL MOTOR COMPARTIDO
+     * No crea ningun hilo: programa la primera fase en GameEngine.
+     * Los participantes se cargan aqui mismo, antes de avisar a los clientes:
+     * su UNIRSE se valida contra participantesPorId
+     */
+    public void iniciar() {
+        cargarParticipantes();
+        if (reanudarDesde != null) {
+            log("=== REANUDANDO JUEGO EN SALA: " + codigoSala + " ===");
+            motor.ejecutar(() -> ejecutarFase(this::faseReanudar));
+            return;
+        }
         log("=== INICIANDO JUEGO EN SALA: " + codigoSala + " ===");
+        motor.ejecutar(() -> ejecutarFase(this::faseCountdown));
+    }
 
+    /**
+     * Ejecuta una fase atrapando cualquier error para que una sala rota
+     * no deje tareas huerfanas en el motor
+     */
+    private void ejecutarFase(Runnable fase) {
+        terminando.lock();
         try {
-            inicializar();
+            if (!activo) {
+                terminar(false);
+                return;
+            }
+            fase.run();
+        } catch (Exception e) {
+            logError("Error en GameRoomThread: " + e.getMessage());
+            e.printStackTrace();
+            // Se conserva el punto de control: la partida se puede reanudar
+            terminar(false);
+        } finally {
+            terminando.unlock();
+        }
+    }
 
-            // Esperar a que el frontend termine su countdown
-            log("Esperando " + (ESPERA_INICIAL/1000) + " segundos para sincronizar con clientes...");
-            Thread.sleep(ESPERA_INICIAL);
+    private void programarFase(Runnable fase, long retrasoMs) {
+        tareaProgramada = motor.programar(() -> ejecutarFase(fase), retrasoMs);
+    }
 
-            // BUCLE PRINCIPAL - CADA PREGUNTA
-            for (int i = 0; i < preguntas.size() && activo; i++) {
-                Preguntas pregunta = preguntas.get(i);
+    // FASE: COUNTDOWN - cargar datos y esperar al countdown del frontend
+    private void faseCountdown() {
+        fase = Fase.COUNTDOWN;
+        inicializar();
 
-                // Actualizar estado
-                preguntaActualIndex = i;
-                preguntaActualId = pregunta.getPreguntaId();
+        log("Esperando " + (ESPERA_INICIAL/1000) + " segundos para sincronizar con clientes...");
+        programarFase(this::faseAbrirPregunta, ESPERA_INICIAL);
+    }
 
-                log("========================================");
-                log("PREGUNTA " + (i + 1) + "/" + preguntas.size() + ": " + pregunta.getContenido());
-                log("Pregunta ID: " + preguntaActualId);
-                log("========================================");
+    // FASE: REANUDAR - despues de un reinicio, seguir en la pregunta siguiente
+    // a la ultima abierta (sus respuestas en memoria se perdieron)
+    private void faseReanudar() {
+        fase = Fase.COUNTDOWN;
+        inicializar();
+        preguntaActualIndex = Math.min(reanudarDesde.preguntaIndex(), snapshot.size() - 1);
+
+        log("Reanudando despues de la pregunta " + (preguntaActualIndex + 1) + "/" + snapshot.size() +
+                " (punto de control: " + reanudarDesde.fase() + ", " + reanudarDesde.marcador().size() +
+                " jugadores)");
+        guardarPuntoControl(0);
+        bitacora.reanudada(preguntaActualIndex);
+
+        // Mismo margen que el countdown: los clientes reconectan solos y reciben REANUDAR
+        programarFase(this::faseAbrirPregunta, ESPERA_INICIAL);
+    }
 
-                // Actualizar en BD
-                sala.setPreguntaActual(i + 1);
-                salaDAO.actualizar(sala);
+    // FASE: PREGUNTA ABIERTA - enviar pregunta y programar el cierre
+    private void faseAbrirPregunta() {
+        int i = preguntaActualIndex + 1;
+        if (i >= snapshot.size()) {
+            faseFinalizar();
+            return;
+        }
 
-                // Limpiar respuestas de la pregunta anterior
-                respuestasPreguntaActual.clear();
-                log("Respuestas limpiadas. Map size: " + respuestasPreguntaActual.size());
+        GameSnapshot.PreguntaSnapshot pregunta = snapshot.get(i);
 
-                // 1. ENVIAR PREGUNTA A TODOS LOS CLIENTES
-                enviarPregunta(pregunta, i + 1);
+        log("========================================");
+        log("PREGUNTA " + (i + 1) + "/" + snapshot.size() + ": " + pregunta.getContenido());
+        log("Pregunta ID: " + pregunta.getPreguntaId());
+        log("========================================");
 
-                // 2. ESPERAR RESPUESTAS (tiempo limite + buffer de latencia)
-                esperarRespuestas(pregunta);
+        // Actualizar en BD (UPDATE directo, sin leer la sala)
+        sala.setPreguntaActual(i + 1);
+        salaDAO.actualizarPreguntaActual(sala.getSalaId(), i + 1);
 
-                // 3. MOSTRAR RESPUESTAS RECIBIDAS
-                log("--- RESPUESTAS RECIBIDAS: " + respuestasPreguntaActual.size() + " ---");
-                for (Map.Entry<Integer, JsonObject> entry : respuestasPreguntaActual.entrySet()) {
-                    log("  Participante " + entry.getKey() + ": " + entry.getValue().toString());
-                }
+        // Limpiar respuestas de la pregunta anterior y abrir la nueva
+        estadoPregunta.lock();
+        try {
+            respuestasPreguntaActual.clear();
+            opcionesAceptadas.clear();
+            yaRespondieron.limpiar();
+            respondieron = 0;
+            conteoEnviado = 0;
+            preguntaActualIndex = i;
+            preguntaActualId = pregunta.getPreguntaId();
+            fase = Fase.PREGUNTA_ABIERTA;
+            // El tiempo de respuesta cuenta desde aqui: ninguna respuesta se acepta
+            // antes de este momento y reanudacion() ve la apertura de esta pregunta
+            aperturaNanos = System.nanoTime();
+
+            // 1. PROGRAMAR CIERRE (tiempo limite + buffer de latencia)
+            // Es una sola tarea programada; si todos responden antes,
+            // cerrarAnticipado la cancela y cierra en ese momento
+            int tiempoTotal = (pregunta.getLimiteTiempo() * 1000) + BUFFER_LATENCIA;
+            log("Esperando respuestas (max " + pregunta.getLimiteTiempo() + "s + " +
+                    (BUFFER_LATENCIA/1000) + "s buffer = " + (tiempoTotal/1000) + "s total)...");
+            cierrePregunta = motor.programar(() -> ejecutarFase(this::faseCerrarPregunta), tiempoTotal);
+            indiceCierre = i;
+
+            // Bajo el lock: queda antes que cualquier RESPUESTA de esta pregunta (es memoria mapeada)
+            bitacora.pregunta(i, pregunta.getPreguntaId(), pregunta.getLimiteTiempo());
+        } finally {
+            estadoPregunta.unlock();
+        }
 
-                // 4. PROCESAR RESPUESTAS Y CALCULAR PUNTOS
-                calcularPuntajesPregunta(pregunta);
+        // 2. ENVIAR PREGUNTA A TODOS LOS CLIENTES (sin I/O a disco entre la apertura y el envio)
+        enviarPregunta(pregunta);
 
-                // 5. ENVIAR RESPUESTA CORRECTA
-                enviarRespuestaCorrecta(pregunta);
+        guardarPuntoControl(System.currentTimeMillis() + pregunta.getLimiteTiempo() * 1000L);
+    }
 
-                // 6. ACTUALIZAR RANKING EN TIEMPO REAL
-                actualizarRanking();
+    /**
+     * Cerrar la pregunta sin esperar al limite (todos respondieron). Requiere estadoPregunta tomado.
+     * Solo cancela el cierre si sigue siendo el de la pregunta abierta: un cierre
+     * de otra pregunta (o uno que ya corrio) no se toca
+     */
+    private void cerrarAnticipado() {
+        if (fase != Fase.PREGUNTA_ABIERTA || indiceCierre != preguntaActualIndex
+                || cierrePregunta == null || !cierrePregunta.cancel(false)) {
+            return;
+        }
+        cierrePregunta = null;
+        log("TODOS RESPONDIERON - Procesando inmediatamente");
+        motor.ejecutar(() -> ejecutarFase(this::faseCerrarPregunta));
+    }
 
-                // 7. PAUSA ANTES DE LA SIGUIENTE PREGUNTA
-                if (i < preguntas.size() - 1) {
-                    log("Pausa de " + (PAUSA_ENTRE_PREGUNTAS/1000) + " segundos antes de siguiente pregunta...");
-                    Thread.sleep(PAUSA_ENTRE_PREGUNTAS);
-                }
+    // FASES: PUNTUANDO -> REVELANDO -> RANKING -> PAUSA
+    private void faseCerrarPregunta() {
+        estadoPregunta.lock();
+        try {
+            // El cierre puede llegar por tiempo o porque todos respondieron: solo una vez
+            if (fase != Fase.PREGUNTA_ABIERTA) {
+                return;
             }
+            // Aceptar lo que ya estaba en la cola antes de cerrar
+            drenarCola();
+            fase = Fase.PUNTUANDO;
+            cierrePregunta = null;
+        } finally {
+            estadoPregunta.unlock();
+        }
 
-            finalizarJuego();
+        GameSnapshot.PreguntaSnapshot pregunta = snapshot.get(preguntaActualIndex);
 
-        } catch (InterruptedException e) {
-            log("Juego interrumpido en sala: " + codigoSala);
-        } catch (Exception e) {
-            logError("Error en GameRoomThread: " + e.getMessage());
-            e.printStackTrace();
+        // 3. RESPUESTAS RECIBIDAS (desde aqui solo esta fase toca la lista)
+        log("--- RESPUESTAS RECIBIDAS: " + respuestasPreguntaActual.size() + "/" + participantes.size() + " ---");
+
+        // 4. PROCESAR RESPUESTAS Y CALCULAR PUNTOS
+        calcularPuntajesPregunta(pregunta);
+        // Pregunta cerrada: el archivo se reescribe con este unico registro
+        puntoControl.compactar(sala.getSalaId(), preguntaActualIndex, fase.name(), 0, marcador.entradas());
+
+        // 5. ENVIAR RESPUESTA CORRECTA
+        fase = Fase.REVELANDO;
+        enviarRespuestaCorrecta(pregunta);
+
+        // 6. ACTUALIZAR RANKING EN TIEMPO REAL
+        fase = Fase.RANKING;
+        actualizarRanking();
+
+        // 7. PAUSA ANTES DE LA SIGUIENTE PREGUNTA
+        if (preguntaActualIndex < snapshot.size() - 1) {
+            fase = Fase.PAUSA;
+            log("Pausa de " + (PAUSA_ENTRE_PREGUNTAS/1000) + " segundos antes de siguiente pregunta...");
+            programarFase(this::faseAbrirPregunta, PAUSA_ENTRE_PREGUNTAS);
+        } else {
+            faseFinalizar();
+        }
+    }
+
+    private void faseFinalizar() {
+        boolean completo = false;
+        try {
+            finalizarJuego();
+            completo = true;
         } finally {
+            terminar(completo);
+        }
+    }
+
+    /**
+     * Deja la sala en estado final y cancela cualquier tarea pendiente
+     *
+     * @param completo true si la partida termino normalmente: se borra el punto de control
+     *                 y se archiva la bitacora. Si no, ambos quedan para reanudarla
+     */
+    private void terminar(boolean completo) {
+        terminando.lock();
+        try {
+            if (fase == Fase.FINALIZADA) {
+                return;
+            }
+            fase = Fase.FINALIZADA;
             activo = false;
+            if (tareaProgramada != null) {
+                tareaProgramada.cancel(false);
+            }
+            ScheduledFuture<?> cierre = cierrePregunta;
+            if (cierre != null) {
+                cierre.cancel(false);
+            }
             preguntaActualIndex = -1;
             preguntaActualId = null;
-            log("=== JUEGO FINALIZADO EN SALA: " + codigoSala + " ===");
+            if (completo) {
+                puntoControl.borrar();
+                bitacora.finalizar();
+                log("=== JUEGO FINALIZADO EN SALA: " + codigoSala + " ===");
+            } else {
+                puntoControl.cerrar();
+                bitacora.suspender();
+                log("=== JUEGO INTERRUMPIDO EN SALA: " + codigoSala + " (punto de control conservado) ===");
+            }
+        } finally {
+            terminando.unlock();
         }
     }
 
     private void inicializar() {
-        preguntas = preguntasDAO.listarPorTrivia(sala.getTrivia().getTriviaId());
+        // Unica lectura de preguntas y opciones: queda congelada en el snapshot
+        long version = CacheTramas.version(sala.getTrivia().getTriviaId());
+        List<Preguntas> preguntas = preguntasDAO.listarPorTrivia(sala.getTrivia().getTriviaId());
 
         if (preguntas == null || preguntas.isEmpty()) {
             throw new RuntimeException("La trivia no tiene preguntas");
         }
+        snapshot = GameSnapshot.crear(sala.getTrivia(), preguntas, version);
 
-        participantes.addAll(participantesDAO.listarActivosPorSala(sala.getSalaId()));
+        // Inicio de la bitacora: con los contadores de partida los eventos bastan para el ranking
+        // (en una partida reanudada se repiten; ReproductorBitacora se queda con los primeros)
+        bitacora.partida(sala.getSalaId(), sala.getTrivia().getTriviaId(), snapshot.size());
+        for (Participantes p : participantes) {
+            bitacora.participante(p.getParticipanteId(), p.getNicknameJuego(), ordenUnion(p),
+                    p.getPuntajeFinal(), p.getPreguntaCorrecta(), p.getPreguntaRespuesta());
+        }
 
         log("Inicializado:");
-        log("  - Preguntas: " + preguntas.size());
+        log("  - Preguntas: " + snapshot.size());
         log("  - Participantes: " + participantes.size());
         for (Participantes p : participantes) {
             log("    * " + p.getNicknameJuego() + " (ID: " + p.getParticipanteId() + ")");
         }
     }
 
-    private void enviarPregunta(Preguntas pregunta, int numeroPregunta) {
-        try {
-            List<OpcionesRespuesta> opciones = opcionesDAO.listarPorPregunta(pregunta.getPreguntaId());
-
-            JsonObject mensajePregunta = new JsonObject();
-            mensajePregunta.addProperty("tipo", "PREGUNTA");
-            mensajePregunta.addProperty("numeroPregunta", numeroPregunta);
-            mensajePregunta.addProperty("totalPreguntas", preguntas.size());
-
-            JsonObject dataPregunta = new JsonObject();
-            dataPregunta.addProperty("preguntaId", pregunta.getPreguntaId());
-            dataPregunta.addProperty("contenido", pregunta.getContenido());
-            dataPregunta.addProperty("tipo", pregunta.getTipo());
-            dataPregunta.addProperty("puntos", pregunta.getPuntos());
-            dataPregunta.addProperty("limiteTiempo", pregunta.getLimiteTiempo());
-
-            if (pregunta.getImagenPregunta() != null) {
-                dataPregunta.addProperty("imagen", pregunta.getImagenPregunta());
-            }
-
-            JsonArray opcionesArray = new JsonArray();
-            for (OpcionesRespuesta opcion : opciones) {
-                JsonObject opcionJson = new JsonObject();
-                opcionJson.addProperty("opcionId", opcion.getOpcionId());
-                opcionJson.addProperty("textoOpcion", opcion.getTextoOpcion());
-                opcionesArray.add(opcionJson);
-            }
-            dataPregunta.add("opciones", opcionesArray);
-
-            mensajePregunta.add("pregunta", dataPregunta);
-
-            String jsonMensaje = gson.toJson(mensajePregunta);
-            log("Enviando pregunta " + numeroPregunta + " (limite: " + pregunta.getLimiteTiempo() + "s)");
-
-            GameWebSocket.broadcast(codigoSala, jsonMensaje, null);
-
-        } catch (Exception e) {
-            logError("Error enviando pregunta: " + e.getMessage());
-            e.printStackTrace();
+    private void cargarParticipantes() {
+        participantes.addAll(participantesDAO.listarActivosPorSala(sala.getSalaId()));
+        if (reanudarDesde != null && !reanudarDesde.marcador().isEmpty()) {
+            restaurarMarcador(reanudarDesde.marcador());
+        }
+        for (Participantes p : participantes) {
+            participantesPorId.put(p.getParticipanteId(), p);
+            marcador.agregar(p.getParticipanteId(), p.getPuntajeFinal(),
+                    p.getPreguntaCorrecta(), p.getPreguntaRespuesta(), ordenUnion(p));
         }
     }
 
-    private void esperarRespuestas(Preguntas pregunta) throws InterruptedException {
-        // Tiempo total = tiempo limite + buffer para latencia
-        int tiempoTotal = (pregunta.getLimiteTiempo() * 1000) + BUFFER_LATENCIA;
-        long tiempoInicio = System.currentTimeMillis();
-
-        log("Esperando respuestas (max " + pregunta.getLimiteTiempo() + "s + " +
-                (BUFFER_LATENCIA/1000) + "s buffer = " + (tiempoTotal/1000) + "s total)...");
-
-        int checkCount = 0;
-        while (System.currentTimeMillis() - tiempoInicio < tiempoTotal && activo) {
-            Thread.sleep(200); // Check cada 200ms
-            checkCount++;
-
-            // Log cada 5 segundos
-            if (checkCount % 25 == 0) {
-                long tiempoTranscurrido = (System.currentTimeMillis() - tiempoInicio) / 1000;
-                log("  [" + tiempoTranscurrido + "s] Respuestas: " +
-                        respuestasPreguntaActual.size() + "/" + participantes.size());
-            }
+    /**
+     * El participante juega en esta sala y es de ese usuario (validar UNIRSE sin ir a la BD)
+     */
+    public boolean esParticipanteDe(int participanteId, int usuarioId) {
+        Participantes p = participantesPorId.get(participanteId);
+        return p != null && p.getUsuario() != null && p.getUsuario().getUsuarioId() == usuarioId;
+    }
 
-            // Si TODOS respondieron, terminar inmediatamente
-            if (respuestasPreguntaActual.size() >= participantes.size()) {
-                log("TODOS RESPONDIERON - Procesando inmediatamente");
-                return;
+    /**
+     * Los contadores del punto de control reemplazan a los de la BD: la escritura
+     * diferida pudo quedar a medias. Se fijan valores absolutos (no se suma)
+     */
+    private void restaurarMarcador(List<Marcador.Entrada> guardado) {
+        Map<Integer, Marcador.Entrada> porId = new HashMap<>();
+        for (Marcador.Entrada entrada : guardado) {
+            porId.put(entrada.getParticipanteId(), entrada);
+        }
+        for (Participantes p : participantes) {
+            Marcador.Entrada entrada = porId.get(p.getParticipanteId());
+            if (entrada != null) {
+                p.setPuntajeFinal(entrada.getPuntaje());
+                p.setPreguntaCorrecta(entrada.getCorrectas());
+                p.setPreguntaRespuesta(entrada.getRespondidas());
             }
         }
+        participantesDAO.fijarContadores(participantes);
+    }
+
+    /**
+     * Agregar un registro al punto de control de la sala
+     *
+     * @param limiteEpochMs hora limite de la pregunta abierta (0 si no hay)
+     */
+    private void guardarPuntoControl(long limiteEpochMs) {
+        puntoControl.escribir(sala.getSalaId(), preguntaActualIndex, fase.name(), limiteEpochMs, marcador.entradas());
+    }
 
-        log("Tiempo agotado. Respuestas finales: " +
-                respuestasPreguntaActual.size() + "/" + participantes.size());
+    private void enviarPregunta(GameSnapshot.PreguntaSnapshot pregunta) {
+        log("Enviando pregunta " + pregunta.getNumero() + " (limite: " + pregunta.getLimiteTiempo() + "s)");
+        GameWebSocket.broadcast(codigoSala, pregunta.getTramaPregunta());
     }
 
-    private void calcularPuntajesPregunta(Preguntas pregunta) {
+    private void calcularPuntajesPregunta(GameSnapshot.PreguntaSnapshot pregunta) {
         log("--- CALCULANDO PUNTAJES ---");
 
-        List<OpcionesRespuesta> opciones = opcionesDAO.listarPorPregunta(pregunta.getPreguntaId());
-        OpcionesRespuesta opcionCorrecta = opciones.stream()
-                .filter(OpcionesRespuesta::getIsCorrecto)
-                .findFirst()
-                .orElse(null);
-
-        if (opcionCorrecta == null) {
+        int opcionCorrectaId = pregunta.getOpcionCorrectaId();
+        if (opcionCorrectaId == -1) {
             logError("No hay respuesta correcta para pregunta: " + pregunta.getPreguntaId());
             return;
         }
 
-        log("Respuesta correcta: opcionId=" + opcionCorrecta.getOpcionId() +
-                " (" + opcionCorrecta.getTextoOpcion() + ")");
+        log("Respuesta correcta: opcionId=" + opcionCorrectaId);
 
-        // Procesar TODAS las respuestas recibidas
-        for (Map.Entry<Integer, JsonObject> entry : respuestasPreguntaActual.entrySet()) {
-            Integer participanteId = entry.getKey();
-            JsonObject respuestaData = entry.getValue();
+        // Procesar TODAS las respuestas recibidas contra el marcador en memoria
+        // (sin consultas a la BD: la escritura se hace despues en lote)
+        List<RespuestasJugador> lote = new ArrayList<>();
+        for (RespuestaRecibida respuesta : respuestasPreguntaActual) {
+            int participanteId = respuesta.participanteId();
 
             try {
-                int opcionSeleccionadaId = respuestaData.get("opcionId").getAsInt();
-                int tiempoTomado = respuestaData.get("tiempoTomado").getAsInt();
-
-                boolean esCorrecta = (opcionSeleccionadaId == opcionCorrecta.getOpcionId());
-
-                int puntosGanados = 0;
-                if (esCorrecta) {
-                    puntosGanados = puntajeService.calcularPuntaje(
-                            tiempoTomado,
-                            pregunta.getPuntos(),
-                            pregunta.getLimiteTiempo()
-                    );
-                }
+                int opcionSeleccionadaId = respuesta.opcionId();
+                int tiempoMs = calcularTiempoServidorMs(respuesta);
 
-                log("Procesando participante " + participanteId + ":");
-                log("  - Opcion seleccionada: " + opcionSeleccionadaId);
-                log("  - Tiempo tomado: " + tiempoTomado + "s");
-                log("  - Es correcta: " + esCorrecta);
-                log("  - Puntos ganados: " + puntosGanados);
-
-                // Guardar respuesta en BD
-                Participantes participante = participantesDAO.buscarPorId(participanteId);
+                Participantes participante = participantesPorId.get(participanteId);
                 if (participante == null) {
                     logError("Participante no encontrado: " + participanteId);
                     continue;
                 }
 
-                OpcionesRespuesta opcionSeleccionada = opcionesDAO.buscarPorId(opcionSeleccionadaId);
+                OpcionesRespuesta opcionSeleccionada = pregunta.buscarOpcion(opcionSeleccionadaId);
                 if (opcionSeleccionada == null) {
                     logError("Opcion no encontrada: " + opcionSeleccionadaId);
                     continue;
                 }
 
-                // CREAR Y GUARDAR RESPUESTA
-                RespuestasJugador respuestaJugador = new RespuestasJugador(participante, pregunta, sala);
-                respuestaJugador.setOpcionSeleccionada(opcionSeleccionada);
-                respuestaJugador.setEsCorrecta(esCorrecta);
-                respuestaJugador.setTiempoTomado(tiempoTomado);
-                respuestaJugador.setPuntosGanados(puntosGanados);
+                boolean esCorrecta = (opcionSeleccionadaId == opcionCorrectaId);
+
+                int puntosGanados = 0;
+                if (esCorrecta) {
+                    // Lo que llego dentro del buffer de latencia (la pregunta seguia abierta) puntua
+                    puntosGanados = puntajeService.calcularPuntajeMs(
+                            tiempoMs,
+                            pregunta.getPuntos(),
+                            pregunta.getLimiteTiempo(),
+                            BUFFER_LATENCIA
+                    );
+                }
 
-                RespuestasJugador guardada = respuestasDAO.crear(respuestaJugador);
-                log("  - Respuesta guardada en BD con ID: " +
-                        (guardada != null ? guardada.getRespuestaId() : "NULL"));
+                // ACTUALIZAR MARCADOR EN MEMORIA
+                Marcador.Entrada entrada = marcador.registrarRespuesta(participanteId, puntosGanados, esCorrecta);
+                bitacora.puntaje(participanteId, pregunta.getPreguntaId(), tiempoMs, puntosGanados, esCorrecta);
 
-                // ACTUALIZAR PUNTAJE Y CONTADORES DEL PARTICIPANTE
-                puntajeService.actualizarPuntaje(participanteId, puntosGanados);
-                puntajeService.registrarRespuesta(participanteId, esCorrecta);
+                log("Participante " + participanteId + ": opcion=" + opcionSeleccionadaId +
+                        ", tiempo=" + tiempoMs + "ms (cliente: " + respuesta.tiempoTomado() + "s)" +
+                        ", correcta=" + esCorrecta +
+                        ", puntos=" + puntosGanados + " -> puntaje=" + entrada.getPuntaje() +
+                        ", correctas=" + entrada.getCorrectas() +
+                        ", respondidas=" + entrada.getRespondidas());
 
-                // Verificar que se actualizo
-                Participantes actualizado = participantesDAO.buscarPorId(participanteId);
-                log("  - Participante actualizado: puntaje=" + actualizado.getPuntajeFinal() +
-                        ", correctas=" + actualizado.getPreguntaCorrecta() +
-                        ", respondidas=" + actualizado.getPreguntaRespuesta());
+                // Respuesta para la escritura diferida
+                RespuestasJugador respuestaJugador = new RespuestasJugador(participante, pregunta.getEntidad(), sala);
+                respuestaJugador.setOpcionSeleccionada(opcionSeleccionada);
+                respuestaJugador.setEsCorrecta(esCorrecta);
+                respuestaJugador.setTiempoTomado(tiempoMs / 1000);
+                respuestaJugador.setTiempoTomadoMs(tiempoMs);
+                respuestaJugador.setPuntosGanados(puntosGanados);
+                respuestaJugador.setRespondioEn(LocalDateTime.now());
+                lote.add(respuestaJugador);
 
             } catch (Exception e) {
                 logError("Error procesando respuesta de participante " + participanteId + ": " + e.getMessage());
@@ -303,93 +514,265 @@ public class GameRoomThread implements Runnable {
             }
         }
 
+        // Escribir en BD en segundo plano
+        persistencia.encolar(lote);
+
         log("--- FIN CALCULO PUNTAJES ---");
     }
 
-    private void enviarRespuestaCorrecta(Preguntas pregunta) {
-        List<OpcionesRespuesta> opciones = opcionesDAO.listarPorPregunta(pregunta.getPreguntaId());
-        OpcionesRespuesta opcionCorrecta = opciones.stream()
-                .filter(OpcionesRespuesta::getIsCorrecto)
-                .findFirst()
-                .orElse(null);
+    private void enviarRespuestaCorrecta(GameSnapshot.PreguntaSnapshot pregunta) {
+        if (pregunta.getTramaRespuestaCorrecta() == null) return;
 
-        if (opcionCorrecta == null) return;
+        log("Enviando respuesta correcta: opcionId=" + pregunta.getOpcionCorrectaId());
+        GameWebSocket.broadcast(codigoSala, pregunta.getTramaRespuestaCorrecta());
+    }
 
-        JsonObject mensaje = new JsonObject();
-        mensaje.addProperty("tipo", "RESPUESTA_CORRECTA");
-        mensaje.addProperty("preguntaId", pregunta.getPreguntaId());
-        mensaje.addProperty("opcionCorrectaId", opcionCorrecta.getOpcionId());
+    /**
+     * RANKING POR PREGUNTA: top 10 comun + la posicion de cada jugador
+     * Cada sesion recibe la misma parte del top y solo su propia posicion,
+     * con el cambio de posiciones respecto a la pregunta anterior
+     */
+    private void actualizarRanking() {
+        log("--- ACTUALIZANDO RANKING ---");
 
-        if (pregunta.getExplicacion() != null) {
-            mensaje.addProperty("explicacion", pregunta.getExplicacion());
+        // Top desde el indice del marcador (sin BD ni sort)
+        List<Integer> top = marcador.top(TOP_RANKING);
+        bitacora.ranking(top, marcador);
+        Map<Integer, Integer> anteriores = posicionesAnteriores;
+        Map<Integer, Integer> actuales = new HashMap<>();
+        for (Participantes p : participantes) {
+            actuales.put(p.getParticipanteId(), marcador.posicion(p.getParticipanteId()));
         }
 
-        log("Enviando respuesta correcta: opcionId=" + opcionCorrecta.getOpcionId());
-        GameWebSocket.broadcast(codigoSala, gson.toJson(mensaje), null);
-    }
+        JsonArray topArray = new JsonArray();
+        ProtocoloBinario.Escritor topBinario = new ProtocoloBinario.Escritor(32 * (top.size() + 1))
+                .tipo(ProtocoloBinario.RANKING)
+                .varint(marcador.size())
+                .varint(top.size());
+        int posicion = 1;
+        for (Integer participanteId : top) {
+            topArray.add(jugadorRanking(participanteId, posicion, anteriores));
+            escribirJugador(topBinario, participanteId, posicion, anteriores);
+
+            Marcador.Entrada entrada = marcador.obtener(participanteId);
+            log("  #" + posicion + " " + participantesPorId.get(participanteId).getNicknameJuego() + ": " +
+                    entrada.getPuntaje() + " pts, " +
+                    entrada.getCorrectas() + "/" + entrada.getRespondidas() + " correctas");
+            posicion++;
+        }
 
-    private synchronized void actualizarRanking() {
-        log("--- ACTUALIZANDO RANKING ---");
+        // Parte comun serializada una vez; a cada sesion solo se le agrega su posicion
+        JsonObject comun = new JsonObject();
+        comun.addProperty("tipo", "RANKING");
+        comun.addProperty("total", marcador.size());
+        comun.add("top", topArray);
+        String json = gson.toJson(comun);
+        String prefijo = json.substring(0, json.length() - 1);
+        byte[] comunBinario = topBinario.bytes();
+
+        GameWebSocket.broadcastPersonalizado(codigoSala, ColaSalida.Clase.RANKING, participanteId -> {
+            Integer miPosicion = actuales.get(participanteId);
+            if (miPosicion == null || miPosicion < 1) {
+                return json;
+            }
+            return prefijo + ",\"miPosicion\":" +
+                    gson.toJson(jugadorRanking(participanteId, miPosicion, anteriores)) + "}";
+        }, participanteId -> {
+            Integer miPosicion = actuales.get(participanteId);
+            ProtocoloBinario.Escritor propio = new ProtocoloBinario.Escritor(32);
+            if (miPosicion == null || miPosicion < 1) {
+                propio.bandera(false);
+            } else {
+                escribirJugador(propio.bandera(true), participanteId, miPosicion, anteriores);
+            }
+            return ProtocoloBinario.concatenar(comunBinario, propio.bytes());
+        });
 
-        // Obtener ranking ORDENADO por puntaje desde la BD
-        List<Participantes> ranking = puntajeService.obtenerRankingActual(sala.getSalaId());
+        posicionesAnteriores = actuales;
+        log("Ranking enviado: top " + top.size() + " de " + marcador.size() + " jugadores");
+    }
 
-        JsonObject mensajeRanking = new JsonObject();
-        mensajeRanking.addProperty("tipo", "RANKING");
+    /**
+     * RANKING COMPLETO para una sesion que se (re)conecta
+     *
+     * @return null si todavia no se ha publicado ningun ranking
+     */
+    private CacheTramas.Trama rankingCompleto(int participanteId) {
+        Map<Integer, Integer> anteriores = posicionesAnteriores;
+        if (anteriores.isEmpty()) {
+            return null;
+        }
 
+        List<Integer> ranking = marcador.top(marcador.size());
         JsonArray rankingArray = new JsonArray();
+        ProtocoloBinario.Escritor binario = new ProtocoloBinario.Escritor(32 * (ranking.size() + 1))
+                .tipo(ProtocoloBinario.RANKING_COMPLETO)
+                .varint(marcador.size())
+                .varint(ranking.size());
         int posicion = 1;
-        for (Participantes p : ranking) {
-            JsonObject jugador = new JsonObject();
-            jugador.addProperty("posicion", posicion);
-            jugador.addProperty("nickname", p.getNicknameJuego());
-            jugador.addProperty("puntaje", p.getPuntajeFinal());
-            jugador.addProperty("correctas", p.getPreguntaCorrecta());
-            jugador.addProperty("respondidas", p.getPreguntaRespuesta());
-            rankingArray.add(jugador);
+        for (Integer id : ranking) {
+            rankingArray.add(jugadorRanking(id, posicion, anteriores));
+            escribirJugador(binario, id, posicion, anteriores);
+            posicion++;
+        }
+
+        JsonObject mensaje = new JsonObject();
+        mensaje.addProperty("tipo", "RANKING");
+        mensaje.addProperty("total", marcador.size());
+        mensaje.add("ranking", rankingArray);
+
+        int miPosicion = marcador.posicion(participanteId);
+        if (miPosicion > 0) {
+            mensaje.add("miPosicion", jugadorRanking(participanteId, miPosicion, anteriores));
+            escribirJugador(binario.bandera(true), participanteId, miPosicion, anteriores);
+        } else {
+            binario.bandera(false);
+        }
+        return new CacheTramas.Trama(gson.toJson(mensaje), binario.bytes());
+    }
 
-            log("  #" + posicion + " " + p.getNicknameJuego() + ": " +
-                    p.getPuntajeFinal() + " pts, " +
-                    p.getPreguntaCorrecta() + "/" + p.getPreguntaRespuesta() + " correctas");
+    /**
+     * ESTADO PARA REANUDAR (jugador que se reconecta a media partida)
+     * Todo en un solo mensaje y sin ir a la BD: la pregunta en curso, el tiempo
+     * que le queda, la respuesta que ya se le acepto, la respuesta correcta si
+     * ya se revelo y el ultimo ranking
+     *
+     * @return null si todavia no hay pregunta (countdown) o el juego ya termino
+     */
+    public CacheTramas.Trama reanudacion(int participanteId) {
+        Fase faseActual;
+        int i;
+        Integer miRespuesta;
+        estadoPregunta.lock();
+        try {
+            faseActual = fase;
+            i = preguntaActualIndex;
+            miRespuesta = opcionesAceptadas.get(participanteId);
+        } finally {
+            estadoPregunta.unlock();
+        }
+        if (i < 0 || faseActual == Fase.FINALIZADA) {
+            return null;
+        }
 
-            posicion++;
+        GameSnapshot.PreguntaSnapshot pregunta = snapshot.get(i);
+        long transcurridoMs = (System.nanoTime() - aperturaNanos) / 1_000_000L;
+        long tiempoRestanteMs = faseActual == Fase.PREGUNTA_ABIERTA
+                ? Math.max(0, pregunta.getLimiteTiempo() * 1000L - transcurridoMs) : 0;
+        CacheTramas.Trama respuestaCorrecta = faseActual == Fase.PREGUNTA_ABIERTA || faseActual == Fase.PUNTUANDO
+                ? null : pregunta.getTramaRespuestaCorrecta();
+        CacheTramas.Trama ranking = rankingCompleto(participanteId);
+
+        // Las tramas ya serializadas se insertan tal cual (sin volver a armar JSON)
+        StringBuilder json = new StringBuilder(pregunta.getTramaPregunta().getLongitudTexto() + 256)
+                .append("{\"tipo\":\"REANUDAR\",\"fase\":\"").append(faseActual.name())
+                .append("\",\"tiempoRestanteMs\":").append(tiempoRestanteMs);
+        if (miRespuesta != null) {
+            json.append(",\"miRespuesta\":").append(miRespuesta);
         }
+        json.append(",\"pregunta\":").append(pregunta.getTramaPregunta().getTexto());
+        if (respuestaCorrecta != null) {
+            json.append(",\"respuestaCorrecta\":").append(respuestaCorrecta.getTexto());
+        }
+        if (ranking != null) {
+            json.append(",\"ranking\":").append(ranking.getTexto());
+        }
+        json.append('}');
+
+        byte[] binario = new ProtocoloBinario.Escritor(pregunta.getTramaPregunta().getLongitudBinario() + 64)
+                .tipo(ProtocoloBinario.REANUDAR)
+                .texto(faseActual.name())
+                .varint((int) tiempoRestanteMs)
+                .varint(miRespuesta != null ? miRespuesta : 0)
+                .subtrama(pregunta.getTramaPregunta().getBinario())
+                .subtrama(respuestaCorrecta != null ? respuestaCorrecta.getBinario() : null)
+                .subtrama(ranking != null ? ranking.getBinario() : null)
+                .bytes();
+
+        log("Reanudando participante " + participanteId + " en pregunta " + (i + 1) + " (" + faseActual +
+                ", quedan " + tiempoRestanteMs + " ms" + (miRespuesta != null ? ", ya respondio" : "") + ")");
+        return new CacheTramas.Trama(json.toString(), binario);
+    }
+
+    /**
+     * Un jugador del ranking; cambio > 0 = subio posiciones desde la pregunta anterior
+     */
+    private JsonObject jugadorRanking(int participanteId, int posicion, Map<Integer, Integer> anteriores) {
+        Participantes p = participantesPorId.get(participanteId);
+        Marcador.Entrada entrada = marcador.obtener(participanteId);
+        Integer anterior = anteriores.get(participanteId);
+
+        JsonObject jugador = new JsonObject();
+        jugador.addProperty("posicion", posicion);
+        jugador.addProperty("nickname", p.getNicknameJuego());
+        jugador.addProperty("puntaje", entrada.getPuntaje());
+        jugador.addProperty("correctas", entrada.getCorrectas());
+        jugador.addProperty("respondidas", entrada.getRespondidas());
+        jugador.addProperty("cambio", anterior == null ? 0 : anterior - posicion);
+        return jugador;
+    }
 
-        mensajeRanking.add("ranking", rankingArray);
+    /**
+     * El mismo jugador en el protocolo binario
+     */
+    private void escribirJugador(ProtocoloBinario.Escritor escritor, int participanteId, int posicion,
+                                 Map<Integer, Integer> anteriores) {
+        Marcador.Entrada entrada = marcador.obtener(participanteId);
+        Integer anterior = anteriores.get(participanteId);
+
+        escritor.varint(posicion)
+                .texto(participantesPorId.get(participanteId).getNicknameJuego())
+                .varint(entrada.getPuntaje())
+                .varint(entrada.getCorrectas())
+                .varint(entrada.getRespondidas())
+                .zigzag(anterior == null ? 0 : anterior - posicion);
+    }
 
-        GameWebSocket.broadcast(codigoSala, gson.toJson(mensajeRanking), null);
-        log("Ranking enviado a " + ranking.size() + " jugadores");
+    /**
+     * Desempate del ranking igual que ParticipantesDAO.obtenerRanking (unio ASC, nulos al final)
+     */
+    private static long ordenUnion(Participantes p) {
+        LocalDateTime unio = p.getUnio();
+        return unio == null ? Long.MAX_VALUE : unio.toInstant(ZoneOffset.UTC).toEpochMilli();
     }
 
     private void finalizarJuego() {
         log("=== FINALIZANDO JUEGO ===");
 
-        // Calcular ranking final
-        puntajeService.calcularRanking(sala.getSalaId());
+        // Escritura final antes de calcular el ranking en BD. Si falla lanza excepcion:
+        // no se calcula un ranking con datos incompletos y terminar(false) conserva el punto de control
+        persistencia.vaciar();
 
-        List<Participantes> rankingFinal = puntajeService.obtenerRankingActual(sala.getSalaId());
+        // Guardar rangofinal en BD (mismo orden que el marcador)
+        puntajeService.calcularRanking(sala.getSalaId());
 
+        // El mensaje sale del marcador en memoria, sin volver a leer el ranking de la BD
         JsonObject mensajeFin = new JsonObject();
         mensajeFin.addProperty("tipo", "JUEGO_FINALIZADO");
         mensajeFin.addProperty("mensaje", "Juego terminado!");
 
         JsonArray rankingArray = new JsonArray();
-        for (Participantes p : rankingFinal) {
+        int rango = 1;
+        for (Integer participanteId : marcador.top(marcador.size())) {
+            Participantes p = participantesPorId.get(participanteId);
+            Marcador.Entrada entrada = marcador.obtener(participanteId);
+            String nickname = p != null ? p.getNicknameJuego() : null;
+
             JsonObject jugador = new JsonObject();
-            jugador.addProperty("rangoFinal", p.getRangoFinal());
-            jugador.addProperty("nickname", p.getNicknameJuego());
-            jugador.addProperty("puntajeFinal", p.getPuntajeFinal());
-            jugador.addProperty("correctas", p.getPreguntaCorrecta());
-            jugador.addProperty("respondidas", p.getPreguntaRespuesta());
+            jugador.addProperty("rangoFinal", rango);
+            jugador.addProperty("nickname", nickname);
+            jugador.addProperty("puntajeFinal", entrada.getPuntaje());
+            jugador.addProperty("correctas", entrada.getCorrectas());
+            jugador.addProperty("respondidas", entrada.getRespondidas());
             rankingArray.add(jugador);
 
-            log("  Final #" + p.getRangoFinal() + " " + p.getNicknameJuego() + ": " +
-                    p.getPuntajeFinal() + " pts");
+            log("  Final #" + rango + " " + nickname + ": " + entrada.getPuntaje() + " pts");
+            rango++;
         }
 
         mensajeFin.add("rankingFinal", rankingArray);
 
-        GameWebSocket.broadcast(codigoSala, gson.toJson(mensajeFin), null);
+        GameWebSocket.broadcast(codigoSala, gson.toJson(mensajeFin), null, ColaSalida.Clase.CRITICO);
 
         // Actualizar estado de la sala
         sala.setStatus("finalizado");
@@ -399,54 +782,183 @@ public class GameRoomThread implements Runnable {
         GameManager.getInstance().finalizarTrivia(codigoSala);
     }
 
+    /**
+     * TIEMPO DE RESPUESTA MEDIDO POR EL SERVIDOR
+     * Recepcion - envio de la pregunta (reloj monotono), menos el ida y vuelta
+     * de esa sesion: la pregunta tarda RTT/2 en llegar y la respuesta RTT/2 en volver
+     */
+    private int calcularTiempoServidorMs(RespuestaRecibida respuesta) {
+        long transcurridoMs = (respuesta.recibidaNanos() - aperturaNanos) / 1_000_000L;
+        int compensacion = Math.min(Math.max(respuesta.rttMs(), 0), MAX_COMPENSACION_RTT);
+        return (int) Math.max(0, transcurridoMs - compensacion);
+    }
+
     /**
      * RECIBIR RESPUESTA DE UN PARTICIPANTE
-     * Este metodo es llamado desde GameManager cuando llega un mensaje RESPUESTA
+     * Este metodo es llamado desde GameManager cuando llega un mensaje RESPUESTA.
+     * Corre en el hilo del contenedor: solo encola y regresa
+     */
+    public boolean recibirRespuesta(JsonObject respuesta) {
+        return recibirRespuesta(respuesta, 0);
+    }
+
+    /**
+     * @param rttMs ida y vuelta de la sesion que envio la respuesta (0 si no se conoce)
+     * @return false si se descarto sin encolar (mal formada o participante ajeno a la sala)
      */
-    public void recibirRespuesta(JsonObject respuesta) {
+    public boolean recibirRespuesta(JsonObject respuesta, int rttMs) {
+        long recibidaNanos = System.nanoTime();
         try {
-            int participanteId = respuesta.get("participanteId").getAsInt();
-            int preguntaIdRecibida = respuesta.get("preguntaId").getAsInt();
-            int opcionId = respuesta.get("opcionId").getAsInt();
-            int tiempoTomado = respuesta.get("tiempoTomado").getAsInt();
-
-            log(">>> RESPUESTA RECIBIDA <<<");
-            log("  Participante ID: " + participanteId);
-            log("  Pregunta ID recibida: " + preguntaIdRecibida);
-            log("  Pregunta ID actual: " + preguntaActualId);
-            log("  Opcion ID: " + opcionId);
-            log("  Tiempo tomado: " + tiempoTomado + "s");
-
-            // Validar que la respuesta sea para la pregunta actual
-            if (preguntaActualId == null) {
-                log("  RECHAZADA: No hay pregunta activa");
-                return;
-            }
+            return encolarRespuesta(new RespuestaRecibida(
+                    respuesta.get("participanteId").getAsInt(),
+                    respuesta.get("preguntaId").getAsInt(),
+                    respuesta.get("opcionId").getAsInt(),
+                    respuesta.has("tiempoTomado") ? respuesta.get("tiempoTomado").getAsInt() : 0,
+                    recibidaNanos,
+                    rttMs));
+        } catch (Exception e) {
+            logError("Respuesta mal formada: " + e.getMessage());
+            return false;
+        }
+    }
 
-            if (preguntaIdRecibida != preguntaActualId) {
-                log("  RECHAZADA: Pregunta incorrecta (esperada: " + preguntaActualId + ")");
-                return;
+    /**
+     * Respuesta ya decodificada por DecodificadorMensajes
+     */
+    public boolean recibirRespuesta(MensajeCliente.Respuesta respuesta, int rttMs) {
+        return encolarRespuesta(new RespuestaRecibida(respuesta.participanteId(), respuesta.preguntaId(),
+                respuesta.opcionId(), respuesta.tiempoTomado(), System.nanoTime(), rttMs));
+    }
+
+    private boolean encolarRespuesta(RespuestaRecibida respuesta) {
+        // Un id que no es de la sala no llega a la cola (ni al ConjuntoEnteros del consumidor)
+        if (!participantesPorId.containsKey(respuesta.participanteId())) {
+            log("RECHAZADA respuesta de " + respuesta.participanteId() + ": no participa en la sala");
+            return false;
+        }
+        colaRespuestas.offer(respuesta);
+
+        if (drenadoProgramado.compareAndSet(false, true)) {
+            motor.ejecutar(this::consumirRespuestas);
+        }
+        return true;
+    }
+
+    /**
+     * CONSUMIDOR UNICO DE LA COLA (corre en el motor)
+     */
+    private void consumirRespuestas() {
+        List<Integer> confirmar;
+
+        estadoPregunta.lock();
+        try {
+            drenadoProgramado.set(false);
+            confirmar = drenarCola();
+            // Si TODOS respondieron, cerrar la pregunta ya
+            if (fase == Fase.PREGUNTA_ABIERTA && todosRespondieron()) {
+                cerrarAnticipado();
             }
+        } catch (Exception e) {
+            logError("Error procesando respuestas: " + e.getMessage());
+            e.printStackTrace();
+            return;
+        } finally {
+            estadoPregunta.unlock();
+        }
 
-            // Verificar si ya respondio
-            if (respuestasPreguntaActual.containsKey(participanteId)) {
-                log("  RECHAZADA: Ya respondio esta pregunta");
-                return;
+        // Enviar confirmaciones fuera del candado (cada una solo a quien respondio)
+        for (Integer participanteId : confirmar) {
+            enviarConfirmacionRespuesta(participanteId);
+        }
+
+        // Al resto de la sala solo le llega el conteo agrupado
+        if (!confirmar.isEmpty() && conteoProgramado.compareAndSet(false, true)) {
+            motor.programar(() -> ejecutarFase(this::enviarConteoRespuestas), INTERVALO_CONTEO);
+        }
+    }
+
+    /**
+     * Ya respondieron todos los jugadores conectados. Requiere estadoPregunta tomado.
+     * Se recorren solo los desconectados (pocos), no toda la sala
+     */
+    private boolean todosRespondieron() {
+        int vivosQueRespondieron = respuestasPreguntaActual.size();
+        for (Integer participanteId : desconectados) {
+            if (yaRespondieron.contiene(participanteId)) {
+                vivosQueRespondieron--;
             }
+        }
+        return vivosQueRespondieron >= participantesVivos();
+    }
 
-            // Guardar respuesta en el mapa
-            respuestasPreguntaActual.put(participanteId, respuesta);
+    private int participantesVivos() {
+        return participantes.size() - desconectados.size();
+    }
 
-            log("  ACEPTADA: Respuesta #" + respuestasPreguntaActual.size() +
-                    " de " + participantes.size());
+    /**
+     * JUGADOR SIN SESION VIVA (llamado desde GameWebSocket)
+     * Si era el ultimo que faltaba por responder, la pregunta se cierra ya
+     */
+    public void participanteDesconectado(int participanteId) {
+        if (!participantesPorId.containsKey(participanteId) || !desconectados.add(participanteId)) {
+            return;
+        }
+        log("Participante " + participanteId + " desconectado (" + participantesVivos() + " conectados)");
 
-            // Enviar confirmacion al cliente
-            enviarConfirmacionRespuesta(participanteId);
+        motor.ejecutar(() -> {
+            estadoPregunta.lock();
+            try {
+                if (fase == Fase.PREGUNTA_ABIERTA && todosRespondieron()) {
+                    cerrarAnticipado();
+                }
+            } finally {
+                estadoPregunta.unlock();
+            }
+        });
+    }
 
-        } catch (Exception e) {
-            logError("Error recibiendo respuesta: " + e.getMessage());
-            e.printStackTrace();
+    public void participanteConectado(int participanteId) {
+        if (desconectados.remove(participanteId)) {
+            log("Participante " + participanteId + " reconectado (" + participantesVivos() + " conectados)");
+        }
+    }
+
+    /**
+     * Validar y aceptar todo lo encolado. Requiere estadoPregunta tomado.
+     * La primera respuesta de cada participante gana.
+     *
+     * @return participantes cuya respuesta fue aceptada
+     */
+    private List<Integer> drenarCola() {
+        List<Integer> aceptados = new ArrayList<>();
+        RespuestaRecibida r;
+        while ((r = colaRespuestas.poll()) != null) {
+            Integer actual = preguntaActualId;
+            if (actual == null || fase != Fase.PREGUNTA_ABIERTA) {
+                log("RECHAZADA respuesta de " + r.participanteId() + ": no hay pregunta activa");
+                continue;
+            }
+            if (r.preguntaId() != actual) {
+                log("RECHAZADA respuesta de " + r.participanteId() + ": pregunta " + r.preguntaId() +
+                        " (esperada: " + actual + ")");
+                continue;
+            }
+            if (!yaRespondieron.agregar(r.participanteId())) {
+                log("RECHAZADA respuesta de " + r.participanteId() + ": ya respondio esta pregunta");
+                continue;
+            }
+
+            respuestasPreguntaActual.add(r);
+            opcionesAceptadas.put(r.participanteId(), r.opcionId());
+            // Hora de llegada al servidor (no la de este drenado)
+            long recibidaEpochMs = System.currentTimeMillis() - (System.nanoTime() - r.recibidaNanos()) / 1_000_000L;
+            bitacora.respuesta(recibidaEpochMs, r.participanteId(), r.preguntaId(), r.opcionId(), r.rttMs());
+            respondieron = respuestasPreguntaActual.size();
+            aceptados.add(r.participanteId());
+            log("ACEPTADA respuesta de " + r.participanteId() + " (opcion " + r.opcionId() + ", " +
+                    r.tiempoTomado() + "s): #" + respuestasPreguntaActual.size() + " de " + participantes.size());
         }
+        return aceptados;
     }
 
     private void enviarConfirmacionRespuesta(int participanteId) {
@@ -455,11 +967,54 @@ public class GameRoomThread implements Runnable {
         confirmacion.addProperty("participanteId", participanteId);
         confirmacion.addProperty("mensaje", "Respuesta registrada");
 
-        GameWebSocket.broadcast(codigoSala, gson.toJson(confirmacion), null);
+        GameWebSocket.enviarAParticipante(participanteId, new CacheTramas.Trama(gson.toJson(confirmacion),
+                ProtocoloBinario.respuestaConfirmada(participanteId)), ColaSalida.Clase.NORMAL);
+    }
+
+    /**
+     * AVISO AGRUPADO "X/Y respondieron"
+     * Corre como tarea programada (por ejecutarFase, como las fases): todas las
+     * respuestas aceptadas en los ultimos INTERVALO_CONTEO ms salen en un solo mensaje a la sala
+     */
+    private void enviarConteoRespuestas() {
+        conteoProgramado.set(false);
+
+        int actual = respondieron;
+        if (fase != Fase.PREGUNTA_ABIERTA || actual == conteoEnviado) {
+            return;
+        }
+        conteoEnviado = actual;
+
+        int total = participantesVivos();
+        JsonObject conteo = new JsonObject();
+        conteo.addProperty("tipo", "RESPONDIERON");
+        conteo.addProperty("respondieron", actual);
+        conteo.addProperty("total", total);
+
+        GameWebSocket.broadcast(codigoSala, new CacheTramas.Trama(gson.toJson(conteo),
+                ProtocoloBinario.respondieron(actual, total)), ColaSalida.Clase.NORMAL);
     }
 
     public void detener() {
         activo = false;
+        terminar(true);
+    }
+
+    /**
+     * Apagado del servidor: parar la sala sin darla por terminada (se reanuda al
+     * volver a arrancar) y escribir lo que la persistencia diferida tenga pendiente.
+     * Con el lock de terminar la fase en curso ya termino y las programadas quedan
+     * canceladas: nada mas agrega a la persistencia mientras se vacia
+     */
+    public void apagar() {
+        activo = false;
+        terminando.lock();
+        try {
+            terminar(false);
+            persistencia.vaciar();
+        } finally {
+            terminando.unlock();
+        }
     }
 
     public boolean estaActivo() {
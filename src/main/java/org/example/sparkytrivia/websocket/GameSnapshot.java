@@ -0,0 +1,220 @@
+package org.example.sparkytrivia.websocket;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.example.sparkytrivia.model.OpcionesRespuesta;
+import org.example.sparkytrivia.model.Preguntas;
+import org.example.sparkytrivia.model.Trivia;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * FOTO INMUTABLE DE UNA TRIVIA PARA UNA PARTIDA
+ *
+ * Se construye UNA vez al iniciar la sala con las preguntas y opciones ya
+ * cargadas. Guarda la opcion correcta y los mensajes PREGUNTA y
+ * RESPUESTA_CORRECTA ya serializados, para que el juego no vuelva a
+ * consultar la BD ni a armar JSON por cada pregunta.
+ *
+ * Las tramas salen de CacheTramas: salas de la misma trivia comparten los mismos bytes.
+ */
+public final class GameSnapshot {
+
+    private static final Gson gson = new Gson();
+
+    private final PreguntaSnapshot[] preguntas;
+
+    private GameSnapshot(PreguntaSnapshot[] preguntas) {
+        this.preguntas = preguntas;
+    }
+
+    /**
+     * Construir la foto a partir de las preguntas (con opciones) de PreguntasDAO.listarPorTrivia
+     *
+     * @param version CacheTramas.version(triviaId) leida antes de cargar las preguntas
+     */
+    public static GameSnapshot crear(Trivia trivia, List<Preguntas> lista, long version) {
+        PreguntaSnapshot[] preguntas = new PreguntaSnapshot[lista.size()];
+        for (int i = 0; i < lista.size(); i++) {
+            preguntas[i] = new PreguntaSnapshot(trivia, lista.get(i), i + 1, lista.size(), version);
+        }
+        return new GameSnapshot(preguntas);
+    }
+
+    public int size() {
+        return preguntas.length;
+    }
+
+    public PreguntaSnapshot get(int index) {
+        return preguntas[index];
+    }
+
+    /**
+     * Una pregunta congelada con todo lo que necesita el juego
+     */
+    public static final class PreguntaSnapshot {
+        private final int preguntaId;
+        private final int numero;
+        private final int puntos;
+        private final int limiteTiempo;
+        private final String contenido;
+        private final int[] opcionIds;
+        private final int opcionCorrectaId;   // -1 si no hay opcion correcta
+        private final CacheTramas.Trama tramaPregunta;
+        private final CacheTramas.Trama tramaRespuestaCorrecta;
+
+        // Entidades (detached) para armar las RespuestasJugador sin consultar la BD
+        private final Preguntas entidad;
+        private final OpcionesRespuesta[] opciones;
+
+        private PreguntaSnapshot(Trivia trivia, Preguntas pregunta, int numero, int total, long version) {
+            List<OpcionesRespuesta> ordenadas = new ArrayList<>(pregunta.getOpciones());
+            ordenadas.sort(Comparator.comparing(OpcionesRespuesta::getOrderPregunta));
+
+            this.entidad = pregunta;
+            this.preguntaId = pregunta.getPreguntaId();
+            this.numero = numero;
+            this.puntos = pregunta.getPuntos();
+            this.limiteTiempo = pregunta.getLimiteTiempo();
+            this.contenido = pregunta.getContenido();
+            this.opciones = ordenadas.toArray(new OpcionesRespuesta[0]);
+            this.opcionIds = new int[opciones.length];
+
+            int correcta = -1;
+            for (int i = 0; i < opciones.length; i++) {
+                opcionIds[i] = opciones[i].getOpcionId();
+                if (Boolean.TRUE.equals(opciones[i].getIsCorrecto()) && correcta == -1) {
+                    correcta = opcionIds[i];
+                }
+            }
+            this.opcionCorrectaId = correcta;
+
+            int triviaId = trivia.getTriviaId();
+            this.tramaPregunta = CacheTramas.obtener(triviaId, preguntaId, version, "PREGUNTA",
+                    () -> serializarPregunta(pregunta, numero, total),
+                    () -> codificarPregunta(pregunta, numero, total));
+            this.tramaRespuestaCorrecta = correcta == -1 ? null :
+                    CacheTramas.obtener(triviaId, preguntaId, version, "RESPUESTA_CORRECTA",
+                            () -> serializarRespuestaCorrecta(pregunta, opcionCorrectaId),
+                            () -> ProtocoloBinario.respuestaCorrecta(preguntaId, opcionCorrectaId,
+                                    pregunta.getExplicacion()));
+        }
+
+        private String serializarPregunta(Preguntas pregunta, int numeroPregunta, int totalPreguntas) {
+            JsonObject mensajePregunta = new JsonObject();
+            mensajePregunta.addProperty("tipo", "PREGUNTA");
+            mensajePregunta.addProperty("numeroPregunta", numeroPregunta);
+            mensajePregunta.addProperty("totalPreguntas", totalPreguntas);
+
+            JsonObject dataPregunta = new JsonObject();
+            dataPregunta.addProperty("preguntaId", pregunta.getPreguntaId());
+            dataPregunta.addProperty("contenido", pregunta.getContenido());
+            dataPregunta.addProperty("tipo", pregunta.getTipo());
+            dataPregunta.addProperty("puntos", pregunta.getPuntos());
+            dataPregunta.addProperty("limiteTiempo", pregunta.getLimiteTiempo());
+
+            if (pregunta.getImagenPregunta() != null) {
+                dataPregunta.addProperty("imagen", pregunta.getImagenPregunta());
+            }
+
+            JsonArray opcionesArray = new JsonArray();
+            for (OpcionesRespuesta opcion : opciones) {
+                JsonObject opcionJson = new JsonObject();
+                opcionJson.addProperty("opcionId", opcion.getOpcionId());
+                opcionJson.addProperty("textoOpcion", opcion.getTextoOpcion());
+                opcionesArray.add(opcionJson);
+            }
+            dataPregunta.add("opciones", opcionesArray);
+
+            mensajePregunta.add("pregunta", dataPregunta);
+            return gson.toJson(mensajePregunta);
+        }
+
+        /**
+         * PREGUNTA en el protocolo binario: la tabla de textos de la pregunta va una sola vez
+         */
+        private byte[] codificarPregunta(Preguntas pregunta, int numeroPregunta, int totalPreguntas) {
+            ProtocoloBinario.Escritor escritor = new ProtocoloBinario.Escritor(256)
+                    .tipo(ProtocoloBinario.PREGUNTA)
+                    .varint(numeroPregunta)
+                    .varint(totalPreguntas)
+                    .varint(pregunta.getPreguntaId())
+                    .varint(pregunta.getPuntos())
+                    .varint(pregunta.getLimiteTiempo());
+
+            escritor.varint(3 + opciones.length)
+                    .texto(pregunta.getContenido())
+                    .texto(pregunta.getTipo())
+                    .texto(pregunta.getImagenPregunta());
+            for (OpcionesRespuesta opcion : opciones) {
+                escritor.texto(opcion.getTextoOpcion());
+            }
+
+            escritor.varint(opciones.length);
+            for (int i = 0; i < opciones.length; i++) {
+                escritor.varint(opciones[i].getOpcionId()).varint(3 + i);
+            }
+            return escritor.bytes();
+        }
+
+        private String serializarRespuestaCorrecta(Preguntas pregunta, int opcionCorrecta) {
+            JsonObject mensaje = new JsonObject();
+            mensaje.addProperty("tipo", "RESPUESTA_CORRECTA");
+            mensaje.addProperty("preguntaId", pregunta.getPreguntaId());
+            mensaje.addProperty("opcionCorrectaId", opcionCorrecta);
+
+            if (pregunta.getExplicacion() != null) {
+                mensaje.addProperty("explicacion", pregunta.getExplicacion());
+            }
+            return gson.toJson(mensaje);
+        }
+
+        public int getPreguntaId() {
+            return preguntaId;
+        }
+
+        public int getNumero() {
+            return numero;
+        }
+
+        public int getPuntos() {
+            return puntos;
+        }
+
+        public int getLimiteTiempo() {
+            return limiteTiempo;
+        }
+
+        public String getContenido() {
+            return contenido;
+        }
+
+        public int getOpcionCorrectaId() {
+            return opcionCorrectaId;
+        }
+
+        public CacheTramas.Trama getTramaPregunta() {
+            return tramaPregunta;
+        }
+
+        public CacheTramas.Trama getTramaRespuestaCorrecta() {
+            return tramaRespuestaCorrecta;
+        }
+
+        public Preguntas getEntidad() {
+            return entidad;
+        }
+
+        public OpcionesRespuesta buscarOpcion(int opcionId) {
+            for (int i = 0; i < opcionIds.length; i++) {
+                if (opcionIds[i] == opcionId) {
+                    return opciones[i];
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -5,39 +5,60 @@ import com.google.gson.JsonObject;
 import jakarta.websocket.*;
 import jakarta.websocket.server.PathParam;
 import jakarta.websocket.server.ServerEndpoint;
-import org.example.sparkytrivia.dao.ParticipantesDAO;
 import org.example.sparkytrivia.dao.SalaDAO;
-import org.example.sparkytrivia.model.Participantes;
 import org.example.sparkytrivia.model.Sala;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.ByteBuffer;
+import java.util.function.IntFunction;
 
 /**
  * WEBSOCKET PARA COMUNICACION EN TIEMPO REAL DEL JUEGO
  *
  * CORRECCION CRITICA: Se agrego la anotacion @OnMessage que faltaba
  * Sin esta anotacion, el servidor nunca recibia los mensajes del cliente
+ *
+ * Si el cliente negocia el subprotocolo "sparky-bin-v1" recibe PREGUNTA,
+ * RESPUESTA_CORRECTA, RANKING, RESPUESTA_CONFIRMADA y REANUDAR en binario (ProtocoloBinario)
+ *
+ * Cada sesion abierta es una Conexion en RegistroSesiones (sala, usuario,
+ * participante, cola de salida y RTT en un solo lugar)
+ *
+ * El usuario sale de la sesion HTTP del login (ConfiguradorSesionHttp), no del UNIRSE
  */
-@ServerEndpoint("/game/{codigoSala}")
+@ServerEndpoint(value = "/game/{codigoSala}",
+        subprotocols = {ProtocoloBinario.SUBPROTOCOLO},
+        decoders = {DecodificadorMensajes.class},
+        configurator = ConfiguradorSesionHttp.class)
 public class GameWebSocket {
 
-    // Almacena todas las conexiones WebSocket por sala
-    private static final Map<String, Map<String, Session>> salasSessions = new ConcurrentHashMap<>();
+    // Todas las conexiones, indexadas por sesion, sala, participante y usuario
+    private static final RegistroSesiones registro = new RegistroSesiones();
 
-    // Mapa: sessionId -> usuarioId (para identificar quien es cada conexion)
-    private static final Map<String, Integer> sessionUsuarios = new ConcurrentHashMap<>();
+    // Ultimo mensaje de cada conexion: las que callan mas de la expiracion se dan de baja
+    private static final RuedaLatidos latidos = RuedaLatidos.desdeConfiguracion(GameWebSocket::expirar);
+
+    // Origen del reloj monotono para el ts del PONG (ms pequenos: seguros como number en JS)
+    private static final long ORIGEN_NANOS = System.nanoTime();
 
     private static final Gson gson = new Gson();
     private static final SalaDAO salaDAO = new SalaDAO();
-    private static final ParticipantesDAO participantesDAO = new ParticipantesDAO();
 
     @OnOpen
     public void onOpen(Session session, @PathParam("codigoSala") String codigoSala) {
         System.out.println("[WS] Nueva conexion - Sala: " + codigoSala + " | SessionID: " + session.getId());
 
         try {
+            // Sala de espectadores de una repeticion: no existe en la BD
+            if (ReproductorBitacora.esSalaEspectadores(codigoSala)) {
+                RegistroSesiones.Conexion conexion = registro.registrar(session, codigoSala);
+                latidos.vigilar(conexion);
+                conexion.getCola().encolar("{\"tipo\":\"CONECTADO\",\"mensaje\":\"Conectado a la repeticion " +
+                        codigoSala + "\"}", ColaSalida.Clase.CRITICO);
+                System.out.println("[WS] Espectador conectado a repeticion: " + codigoSala);
+                return;
+            }
+
             // Verificar que la sala exista
             Sala sala = salaDAO.buscarPorCodigo(codigoSala);
             if (sala == null) {
@@ -49,16 +70,16 @@ public class GameWebSocket {
                 return;
             }
 
-            // Agregar sesion al mapa de la sala
-            salasSessions.computeIfAbsent(codigoSala, k -> new ConcurrentHashMap<>())
-                    .put(session.getId(), session);
+            // Registrar la conexion en la sala (con su cola de salida)
+            RegistroSesiones.Conexion conexion = registro.registrar(session, codigoSala);
+            latidos.vigilar(conexion);
 
             // Enviar confirmacion de conexion
             JsonObject confirmacion = new JsonObject();
             confirmacion.addProperty("tipo", "CONECTADO");
             confirmacion.addProperty("mensaje", "Conectado a sala " + codigoSala);
             confirmacion.addProperty("salaId", sala.getSalaId());
-            session.getBasicRemote().sendText(gson.toJson(confirmacion));
+            conexion.getCola().encolar(gson.toJson(confirmacion), ColaSalida.Clase.CRITICO);
 
             System.out.println("[WS] Cliente conectado exitosamente a sala: " + codigoSala);
 
@@ -73,38 +94,34 @@ public class GameWebSocket {
      * Sin ella, el metodo nunca se ejecutaba cuando llegaban mensajes
      */
     @OnMessage
-    public void onMessage(String mensaje, Session session, @PathParam("codigoSala") String codigoSala) {
-        System.out.println("[WS] Mensaje recibido en sala " + codigoSala + ": " + mensaje);
-
+    public void onMessage(MensajeCliente mensaje, Session session, @PathParam("codigoSala") String codigoSala) {
         try {
-            // Parsear mensaje JSON
-            JsonObject data = gson.fromJson(mensaje, JsonObject.class);
-            String tipo = data.get("tipo").getAsString();
-
-            System.out.println("[WS] Tipo de mensaje: " + tipo);
-
-            switch (tipo) {
-                case "UNIRSE":
-                    manejarUnirse(session, codigoSala, data);
-                    break;
-
-                case "RESPUESTA":
-                    manejarRespuesta(session, codigoSala, data);
-                    break;
-
-                case "CHAT":
-                    manejarChat(session, codigoSala, data);
-                    break;
-
-                case "PING":
-                    // Responder PONG para mantener conexion viva
-                    JsonObject pong = new JsonObject();
-                    pong.addProperty("tipo", "PONG");
-                    session.getBasicRemote().sendText(gson.toJson(pong));
-                    break;
-
-                default:
-                    System.out.println("[WS] Tipo de mensaje desconocido: " + tipo);
+            RegistroSesiones.Conexion conexion = registro.buscarPorSesion(session.getId());
+            if (conexion == null) {
+                return; // sesion ya dada de baja (ej. reemplazada por otra pestana)
+            }
+            conexion.tocar();
+
+            // DecodificadorMensajes ya entrega el record del tipo correspondiente
+            if (mensaje instanceof MensajeCliente.Ping) {
+                // Responder PONG para mantener conexion viva
+                // ts = reloj del servidor; el cliente lo regresa en ECO para medir el RTT
+                enviar(conexion, "{\"tipo\":\"PONG\",\"ts\":" + relojMs() + "}", ColaSalida.Clase.NORMAL);
+
+            } else if (mensaje instanceof MensajeCliente.Respuesta respuesta) {
+                manejarRespuesta(conexion, codigoSala, respuesta);
+
+            } else if (mensaje instanceof MensajeCliente.Eco eco) {
+                registrarRtt(conexion, eco.ts());
+
+            } else if (mensaje instanceof MensajeCliente.Unirse unirse) {
+                manejarUnirse(conexion, codigoSala, unirse);
+
+            } else if (mensaje instanceof MensajeCliente.Chat chat) {
+                manejarChat(conexion, codigoSala, chat);
+
+            } else if (mensaje instanceof MensajeCliente.Desconocido desconocido) {
+                System.out.println("[WS] Tipo de mensaje desconocido: " + desconocido.tipo());
             }
 
         } catch (Exception e) {
@@ -118,32 +135,63 @@ public class GameWebSocket {
         System.out.println("[WS] Cliente desconectado - Sala: " + codigoSala + " | SessionID: " + session.getId());
 
         try {
-            // Remover sesion del mapa
-            Map<String, Session> sessionsEnSala = salasSessions.get(codigoSala);
-            if (sessionsEnSala != null) {
-                sessionsEnSala.remove(session.getId());
-
-                // Si no quedan sesiones, remover la sala del mapa
-                if (sessionsEnSala.isEmpty()) {
-                    salasSessions.remove(codigoSala);
-                }
+            // Quitar la conexion de todos los indices (y cerrar su cola) en un paso
+            // null si ya se habia dado de baja (expirada o reemplazada por otra pestana)
+            RegistroSesiones.Conexion conexion = registro.quitar(session.getId());
+            if (conexion != null) {
+                despuesDeBaja(conexion);
             }
 
-            // Remover del mapa de usuarios
-            sessionUsuarios.remove(session.getId());
-
-            // Notificar a otros que alguien salio
-            JsonObject notificacion = new JsonObject();
-            notificacion.addProperty("tipo", "JUGADOR_SALIO");
-            notificacion.addProperty("sessionId", session.getId());
-            broadcast(codigoSala, gson.toJson(notificacion), session.getId());
-
         } catch (Exception e) {
             System.err.println("[WS] Error en onClose: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * La sesion no mando nada (ni PING) en el periodo de expiracion: socket muerto
+     * Se da de baja ya, sin esperar a que el contenedor note el cierre
+     */
+    private static void expirar(RegistroSesiones.Conexion conexion) {
+        if (registro.quitar(conexion.getSessionId()) == null) {
+            return;
+        }
+        System.out.println("[WS] Sesion sin latido, se da de baja - Sala: " + conexion.getCodigoSala() +
+                " | SessionID: " + conexion.getSessionId());
+        despuesDeBaja(conexion);
+
+        // El cierre puede tardar con un socket muerto: fuera del tick de la rueda
+        GameEngine.getInstance().ejecutar(() -> {
+            try {
+                conexion.getSession().close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "Sin latido"));
+            } catch (IOException | IllegalStateException e) {
+                System.err.println("[WS] Error cerrando sesion expirada: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Efectos de una baja: avisar al juego de la sala y al resto de las sesiones
+     */
+    private static void despuesDeBaja(RegistroSesiones.Conexion conexion) {
+        String codigoSala = conexion.getCodigoSala();
+        if (registro.contarSala(codigoSala) == 0) {
+            FanOut.olvidar(codigoSala);
+        }
+
+        // El jugador deja de contar para "todos respondieron" (salvo que siga en otra sesion)
+        int participanteId = conexion.getParticipanteId();
+        if (participanteId > 0 && registro.buscarPorParticipante(participanteId) == null) {
+            GameManager.getInstance().participanteDesconectado(codigoSala, participanteId);
+        }
+
+        // Notificar a otros que alguien salio
+        JsonObject notificacion = new JsonObject();
+        notificacion.addProperty("tipo", "JUGADOR_SALIO");
+        notificacion.addProperty("sessionId", conexion.getSessionId());
+        broadcast(codigoSala, gson.toJson(notificacion), conexion.getSessionId());
+    }
+
     @OnError
     public void onError(Session session, Throwable throwable, @PathParam("codigoSala") String codigoSala) {
         System.err.println("[WS] Error WebSocket - Sala: " + codigoSala + " | Error: " + throwable.getMessage());
@@ -153,14 +201,45 @@ public class GameWebSocket {
     /**
      * Manejar cuando un usuario se une a la sala
      */
-    private void manejarUnirse(Session session, String codigoSala, JsonObject data) throws IOException {
-        int usuarioId = data.get("usuarioId").getAsInt();
-        String nickname = data.get("nickname").getAsString();
+    private void manejarUnirse(RegistroSesiones.Conexion conexion, String codigoSala, MensajeCliente.Unirse data) {
+        String nickname = data.nickname();
+
+        // Quien es lo dice la sesion HTTP del handshake, no el mensaje
+        Object delLogin = conexion.getSession().getUserProperties().get(ConfiguradorSesionHttp.USUARIO_ID);
+        if (!(delLogin instanceof Integer)) {
+            System.out.println("[WS] UNIRSE sin sesion iniciada ignorado - SessionID: " + conexion.getSessionId());
+            return;
+        }
+        int usuarioId = (Integer) delLogin;
+        if (data.usuarioId() != usuarioId) {
+            System.out.println("[WS] UNIRSE con usuarioId " + data.usuarioId() + " distinto al de la sesion (" +
+                    usuarioId + "), se usa el de la sesion");
+        }
 
         System.out.println("[WS] Usuario uniendose - ID: " + usuarioId + " | Nick: " + nickname);
 
-        // Guardar relacion session -> usuario
-        sessionUsuarios.put(session.getId(), usuarioId);
+        // Asociar la conexion con el usuario (y el participante si es suyo en la partida de esta sala)
+        Integer participanteSolicitado = data.participanteId();
+        if (participanteSolicitado != null
+                && !GameManager.getInstance().esParticipanteDe(codigoSala, participanteSolicitado, usuarioId)) {
+            System.out.println("[WS] RECHAZADO participante " + participanteSolicitado + ": no es del usuario " +
+                    usuarioId + " en sala " + codigoSala);
+            participanteSolicitado = null;
+        }
+        RegistroSesiones.Conexion anterior = registro.identificar(conexion, usuarioId, participanteSolicitado);
+        if (anterior != null) {
+            // El mismo jugador abrio otra pestana: gana la nueva
+            System.out.println("[WS] Participante " + participanteSolicitado + " reconectado desde otra pestana, " +
+                    "cerrando sesion " + anterior.getSessionId());
+            cerrarDuplicada(anterior);
+        } else if (registro.buscarPorUsuario(usuarioId).size() > 1) {
+            System.out.println("[WS] Usuario " + usuarioId + " tiene " +
+                    registro.buscarPorUsuario(usuarioId).size() + " conexiones abiertas");
+        }
+        int participanteId = conexion.getParticipanteId();
+        if (participanteId > 0) {
+            GameManager.getInstance().participanteConectado(codigoSala, participanteId);
+        }
 
         // Notificar a todos que alguien se unio
         JsonObject notificacion = new JsonObject();
@@ -169,29 +248,37 @@ public class GameWebSocket {
         notificacion.addProperty("nickname", nickname);
 
         broadcast(codigoSala, gson.toJson(notificacion), null);
+
+        // Si la partida ya va en curso (reconexion), su estado en un solo mensaje solo para esta sesion
+        CacheTramas.Trama reanudacion = GameManager.getInstance().obtenerReanudacion(codigoSala, participanteId);
+        if (reanudacion != null) {
+            enviar(conexion, reanudacion, ColaSalida.Clase.CRITICO);
+        }
+    }
+
+    /**
+     * Avisar y cerrar la sesion que quedo reemplazada por otra pestana
+     * (cierre normal: el cliente no intenta reconectar)
+     * El aviso va por su ColaSalida y la sesion se cierra cuando termina de enviarse
+     */
+    private void cerrarDuplicada(RegistroSesiones.Conexion anterior) {
+        // Antes de la baja: quitar() cierra la cola, pero respeta una despedida en curso
+        anterior.getCola().despedir("{\"tipo\":\"SESION_DUPLICADA\"," +
+                        "\"mensaje\":\"El juego se abrio en otra pestana\"}",
+                new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "Sesion duplicada"));
+        registro.quitar(anterior.getSessionId());
     }
 
     /**
      * Manejar respuesta de un jugador a una pregunta
      * ESTE ES EL METODO CRITICO que envia la respuesta al GameRoomThread
+     * (solo se encola: el log y la validacion los hace el consumidor de la sala)
      */
-    private void manejarRespuesta(Session session, String codigoSala, JsonObject data) {
+    private void manejarRespuesta(RegistroSesiones.Conexion conexion, String codigoSala,
+                                  MensajeCliente.Respuesta data) {
         try {
-            int participanteId = data.get("participanteId").getAsInt();
-            int preguntaId = data.get("preguntaId").getAsInt();
-            int opcionId = data.get("opcionId").getAsInt();
-            int tiempoTomado = data.get("tiempoTomado").getAsInt();
-
-            System.out.println("[WS] ========== RESPUESTA RECIBIDA ==========");
-            System.out.println("[WS] Sala: " + codigoSala);
-            System.out.println("[WS] Participante ID: " + participanteId);
-            System.out.println("[WS] Pregunta ID: " + preguntaId);
-            System.out.println("[WS] Opcion ID: " + opcionId);
-            System.out.println("[WS] Tiempo tomado: " + tiempoTomado + "s");
-            System.out.println("[WS] ==========================================");
-
             // Enviar al GameRoomThread para procesar
-            GameManager.getInstance().procesarRespuesta(codigoSala, data);
+            GameManager.getInstance().procesarRespuesta(codigoSala, data, conexion.getRttMs());
 
         } catch (Exception e) {
             System.err.println("[WS] Error procesando respuesta: " + e.getMessage());
@@ -199,12 +286,29 @@ public class GameWebSocket {
         }
     }
 
+    /**
+     * Medir ida y vuelta con el ts que el servidor puso en el PONG
+     * Promedio movil (1/4 la muestra nueva) para suavizar picos
+     */
+    private void registrarRtt(RegistroSesiones.Conexion conexion, long tsServidor) {
+        long muestra = relojMs() - tsServidor;
+        if (muestra < 0 || muestra > 10_000) {
+            return; // ts invalido o viejo
+        }
+        int anterior = conexion.getRttMs();
+        conexion.setRttMs(anterior == 0 ? (int) muestra : (anterior * 3 + (int) muestra) / 4);
+    }
+
+    private static long relojMs() {
+        return (System.nanoTime() - ORIGEN_NANOS) / 1_000_000L;
+    }
+
     /**
      * Manejar mensaje de chat
      */
-    private void manejarChat(Session session, String codigoSala, JsonObject data) throws IOException {
-        String mensaje = data.get("mensaje").getAsString();
-        Integer usuarioId = sessionUsuarios.get(session.getId());
+    private void manejarChat(RegistroSesiones.Conexion conexion, String codigoSala, MensajeCliente.Chat data) {
+        String mensaje = data.mensaje();
+        Integer usuarioId = conexion.getUsuarioId();
 
         if (usuarioId != null) {
             JsonObject chat = new JsonObject();
@@ -221,37 +325,120 @@ public class GameWebSocket {
      * Enviar mensaje a todos los clientes de una sala
      */
     public static void broadcast(String codigoSala, String mensaje, String excluirSessionId) {
-        Map<String, Session> sessionsEnSala = salasSessions.get(codigoSala);
-
-        if (sessionsEnSala != null) {
-            System.out.println("[WS] Broadcasting a sala " + codigoSala + " (" + sessionsEnSala.size() + " clientes)");
+        broadcast(codigoSala, mensaje, excluirSessionId, ColaSalida.Clase.NORMAL);
+    }
 
-            for (Map.Entry<String, Session> entry : sessionsEnSala.entrySet()) {
+    /**
+     * Enviar mensaje a todos los clientes de una sala
+     * Solo encola en cada sesion: un cliente lento no detiene a la sala
+     *
+     * @param clase importancia del mensaje si la cola de alguna sesion esta llena
+     */
+    public static void broadcast(String codigoSala, String mensaje, String excluirSessionId,
+                                 ColaSalida.Clase clase) {
+        RegistroSesiones.Conexion[] sesiones = registro.deSala(codigoSala);
+
+        if (sesiones != null) {
+            // Misma instancia del mensaje para todas las sesiones (y todos los bloques)
+            long inicio = System.nanoTime();
+            int bloques = FanOut.repartir(codigoSala, sesiones, conexion -> {
                 // Excluir sesion si se especifico
-                if (excluirSessionId != null && entry.getKey().equals(excluirSessionId)) {
-                    continue;
+                if (excluirSessionId == null || !conexion.getSessionId().equals(excluirSessionId)) {
+                    enviar(conexion, mensaje, clase);
                 }
+            });
 
-                Session clientSession = entry.getValue();
-                if (clientSession.isOpen()) {
-                    try {
-                        clientSession.getBasicRemote().sendText(mensaje);
-                    } catch (IOException e) {
-                        System.err.println("[WS] Error enviando mensaje a sesion: " + entry.getKey());
-                        e.printStackTrace();
-                    }
-                }
-            }
+            System.out.println("[WS] Broadcasting a sala " + codigoSala + " (" + sesiones.length + " clientes, " +
+                    bloques + " bloque(s), " + String.format("%.2f", (System.nanoTime() - inicio) / 1_000_000.0) + " ms)");
         } else {
             System.out.println("[WS] No hay sesiones en sala: " + codigoSala);
         }
     }
 
+    /**
+     * Enviar a cada cliente de la sala su propio mensaje
+     * Las funciones reciben el participanteId de la sesion (-1 si no es jugador, ej. el host):
+     * una arma el JSON y la otra la trama binaria, segun lo que negocio cada sesion
+     */
+    public static void broadcastPersonalizado(String codigoSala, ColaSalida.Clase clase,
+                                              IntFunction<String> mensajePorParticipante,
+                                              IntFunction<ByteBuffer> binarioPorParticipante) {
+        RegistroSesiones.Conexion[] sesiones = registro.deSala(codigoSala);
+        if (sesiones == null) {
+            return;
+        }
+
+        FanOut.repartir(codigoSala, sesiones, conexion -> {
+            int participanteId = conexion.getParticipanteId();
+            if (conexion.esBinaria()) {
+                enviar(conexion, binarioPorParticipante.apply(participanteId), clase);
+            } else {
+                enviar(conexion, mensajePorParticipante.apply(participanteId), clase);
+            }
+        });
+    }
+
+    /**
+     * Enviar un mensaje a una sola sesion (a traves de su cola de salida)
+     */
+    private static void enviar(RegistroSesiones.Conexion conexion, String mensaje, ColaSalida.Clase clase) {
+        if (conexion.getSession().isOpen()) {
+            conexion.getCola().encolar(mensaje, clase);
+        }
+    }
+
+    private static void enviar(RegistroSesiones.Conexion conexion, ByteBuffer binario, ColaSalida.Clase clase) {
+        if (conexion.getSession().isOpen()) {
+            conexion.getCola().encolar(binario, clase);
+        }
+    }
+
+    /**
+     * Enviar una trama a una sola sesion, en el formato que negocio
+     */
+    static void enviar(RegistroSesiones.Conexion conexion, CacheTramas.Trama trama, ColaSalida.Clase clase) {
+        if (trama.tieneBinario() && conexion.esBinaria()) {
+            enviar(conexion, trama.getBinario(), clase);
+        } else {
+            enviar(conexion, trama.getTexto(), clase);
+        }
+    }
+
+    /**
+     * Enviar una trama solo a la sesion de un participante (O(1) por el registro)
+     *
+     * @return false si el participante no tiene una sesion abierta
+     */
+    public static boolean enviarAParticipante(int participanteId, CacheTramas.Trama trama, ColaSalida.Clase clase) {
+        RegistroSesiones.Conexion conexion = registro.buscarPorParticipante(participanteId);
+        if (conexion == null) {
+            return false;
+        }
+        enviar(conexion, trama, clase);
+        return true;
+    }
+
+    /**
+     * Enviar una trama ya codificada (CacheTramas) a todos los clientes de una sala
+     * La misma instancia de texto se comparte entre salas: no se vuelve a serializar
+     */
+    public static void broadcast(String codigoSala, CacheTramas.Trama trama) {
+        broadcast(codigoSala, trama, ColaSalida.Clase.CRITICO);
+    }
+
+    public static void broadcast(String codigoSala, CacheTramas.Trama trama, ColaSalida.Clase clase) {
+        RegistroSesiones.Conexion[] sesiones = registro.deSala(codigoSala);
+        if (sesiones == null) {
+            return;
+        }
+
+        FanOut.repartir(codigoSala, sesiones, conexion -> enviar(conexion, trama, clase));
+    }
+
     /**
      * Obtener numero de conexiones activas en una sala
      */
     public static int getConexionesActivas(String codigoSala) {
-        Map<String, Session> sessions = salasSessions.get(codigoSala);
-        return sessions != null ? sessions.size() : 0;
+        return registro.contarSala(codigoSala);
     }
 }
\ No newline at end of file
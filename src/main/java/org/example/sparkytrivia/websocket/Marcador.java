@@ -0,0 +1,113 @@
+package org.example.sparkytrivia.websocket;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MARCADOR EN MEMORIA DE UNA SALA
+ *
+ * Mientras el juego corre, este marcador es la fuente de verdad de
+ * puntaje, correctas y respondidas de cada participante.
+ * La BD se actualiza despues con PersistenciaDiferida.
+ *
+ * Mantiene ademas el RankingIndexado al dia con cada respuesta puntuada.
+ */
+public class Marcador {
+
+    private final Map<Integer, Entrada> entradas = new ConcurrentHashMap<>();
+    private final RankingIndexado ranking = new RankingIndexado();
+
+    /**
+     * Registrar a un participante con sus contadores actuales
+     *
+     * @param ordenUnion momento de union en ms, desempata el ranking (Long.MAX_VALUE si no se conoce)
+     */
+    public void agregar(int participanteId, int puntaje, int correctas, int respondidas, long ordenUnion) {
+        entradas.put(participanteId, new Entrada(participanteId, puntaje, correctas, respondidas));
+        ranking.agregar(participanteId, puntaje, ordenUnion);
+    }
+
+    /**
+     * Sumar el resultado de una respuesta
+     *
+     * @return La entrada actualizada, o null si el participante no esta en el marcador
+     */
+    public Entrada registrarRespuesta(int participanteId, int puntosGanados, boolean esCorrecta) {
+        Entrada entrada = entradas.get(participanteId);
+        if (entrada == null) {
+            return null;
+        }
+        int puntaje;
+        synchronized (entrada) {
+            entrada.puntaje += puntosGanados;
+            entrada.respondidas++;
+            if (esCorrecta) {
+                entrada.correctas++;
+            }
+            puntaje = entrada.puntaje;
+        }
+        ranking.actualizar(participanteId, puntaje);
+        return entrada;
+    }
+
+    /**
+     * Los primeros N participantes en orden de ranking (sin ordenar toda la sala)
+     */
+    public List<Integer> top(int n) {
+        return ranking.top(n);
+    }
+
+    /**
+     * Posicion actual (1 = primero), o -1 si no esta en el marcador
+     */
+    public int posicion(int participanteId) {
+        return ranking.posicion(participanteId);
+    }
+
+    public Entrada obtener(int participanteId) {
+        return entradas.get(participanteId);
+    }
+
+    public Collection<Entrada> entradas() {
+        return entradas.values();
+    }
+
+    public int size() {
+        return entradas.size();
+    }
+
+    /**
+     * Contadores de un participante
+     */
+    public static class Entrada {
+        private final int participanteId;
+        private int puntaje;
+        private int correctas;
+        private int respondidas;
+
+        Entrada(int participanteId, int puntaje, int correctas, int respondidas) {
+            this.participanteId = participanteId;
+            this.puntaje = puntaje;
+            this.correctas = correctas;
+            this.respondidas = respondidas;
+        }
+
+        public int getParticipanteId() {
+            return participanteId;
+        }
+
+        public synchronized int getPuntaje() {
+            return puntaje;
+        }
+
+        public synchronized int getCorrectas() {
+            return correctas;
+        }
+
+        public synchronized int getRespondidas() {
+            return respondidas;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.sparkytrivia.websocket;
+
+/**
+ * MENSAJES QUE ENVIA EL CLIENTE POR EL WEBSOCKET
+ *
+ * DecodificadorMensajes convierte cada trama de texto directamente en uno
+ * de estos records inmutables (sin armar un arbol JsonObject).
+ */
+public sealed interface MensajeCliente {
+
+    record Unirse(int usuarioId, String nickname, Integer participanteId) implements MensajeCliente {
+    }
+
+    record Respuesta(int participanteId, int preguntaId, int opcionId, int tiempoTomado) implements MensajeCliente {
+    }
+
+    record Chat(String mensaje) implements MensajeCliente {
+    }
+
+    /**
+     * Heartbeat: no tiene campos, se usa siempre la misma instancia
+     */
+    record Ping() implements MensajeCliente {
+        public static final Ping INSTANCIA = new Ping();
+    }
+
+    /**
+     * El cliente regresa el ts del PONG para medir el RTT
+     */
+    record Eco(long ts) implements MensajeCliente {
+    }
+
+    record Desconocido(String tipo) implements MensajeCliente {
+    }
+}
@@ -0,0 +1,139 @@
+package org.example.sparkytrivia.websocket;
+
+import org.example.sparkytrivia.dao.ParticipantesDAO;
+import org.example.sparkytrivia.dao.RespuestasJugadorDAO;
+import org.example.sparkytrivia.model.RespuestasJugador;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ESCRITURA DIFERIDA (WRITE-BEHIND) DE LOS RESULTADOS DE UNA SALA
+ *
+ * El GameRoomThread encola las respuestas ya puntuadas y sigue con el juego.
+ * Un hilo de fondo las escribe en lotes: todas las RespuestasJugador
+ * pendientes en una transaccion y los contadores de Participantes en otra.
+ *
+ * vaciar() hace la escritura final de forma sincrona (al terminar el juego):
+ * reintenta unas veces y, si algo sigue sin escribirse, lanza excepcion.
+ */
+public class PersistenciaDiferida {
+
+    // Pocos hilos compartidos por todas las salas: solo hacen I/O contra la BD
+    private static final ExecutorService escritores = Executors.newFixedThreadPool(
+            Integer.getInteger("sparky.persistencia.hilos", 2), r -> {
+                Thread t = new Thread(r, "PersistenciaJuego");
+                t.setDaemon(true);
+                return t;
+            });
+
+    // Intentos de vaciar() antes de rendirse; la espera crece con cada intento
+    private static final int INTENTOS_VACIADO = Integer.getInteger("sparky.persistencia.intentos", 3);
+    private static final long ESPERA_REINTENTO_MS = 200;
+
+    private final String codigoSala;
+    private final ConcurrentLinkedQueue<RespuestasJugador> pendientes = new ConcurrentLinkedQueue<>();
+    // Respuestas ya insertadas cuyo resultado falta sumar en Participantes
+    private final ConcurrentLinkedQueue<RespuestasJugador> contadoresPendientes = new ConcurrentLinkedQueue<>();
+
+    // Un solo lote a la vez por sala; vaciar() espera al que este en curso
+    private final ReentrantLock escribiendo = new ReentrantLock();
+
+    private final RespuestasJugadorDAO respuestasDAO = new RespuestasJugadorDAO();
+    private final ParticipantesDAO participantesDAO = new ParticipantesDAO();
+
+    private final AtomicInteger escritas = new AtomicInteger();
+
+    public PersistenciaDiferida(String codigoSala) {
+        this.codigoSala = codigoSala;
+    }
+
+    /**
+     * Encolar las respuestas puntuadas de una pregunta y escribirlas en segundo plano
+     */
+    public void encolar(List<RespuestasJugador> respuestas) {
+        if (respuestas.isEmpty()) {
+            return;
+        }
+        pendientes.addAll(respuestas);
+        escritores.execute(this::escribirPendientes);
+    }
+
+    /**
+     * Escritura final: escribe todo lo pendiente en el hilo actual
+     *
+     * @throws RuntimeException si despues de INTENTOS_VACIADO quedan respuestas o contadores sin escribir
+     */
+    public void vaciar() {
+        for (int intento = 1; ; intento++) {
+            escribirPendientes();
+            if (pendientes.isEmpty() && contadoresPendientes.isEmpty()) {
+                System.out.println("[GAME:" + codigoSala + "] Persistencia diferida vaciada (" +
+                        escritas.get() + " respuestas escritas)");
+                return;
+            }
+            if (intento >= INTENTOS_VACIADO) {
+                throw new RuntimeException("Error al vaciar la persistencia de la sala " + codigoSala + ": " +
+                        pendientes.size() + " respuestas y " + contadoresPendientes.size() +
+                        " contadores sin escribir despues de " + intento + " intentos");
+            }
+            logError("Vaciado incompleto (intento " + intento + "/" + INTENTOS_VACIADO + "), reintentando...");
+            try {
+                Thread.sleep(ESPERA_REINTENTO_MS * intento);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Vaciado de la sala " + codigoSala + " interrumpido", e);
+            }
+        }
+    }
+
+    private void escribirPendientes() {
+        escribiendo.lock();
+        try {
+            // 1. Insertar las respuestas pendientes en una transaccion
+            List<RespuestasJugador> lote = drenar(pendientes);
+            if (!lote.isEmpty()) {
+                try {
+                    respuestasDAO.crearLote(lote);
+                    escritas.addAndGet(lote.size());
+                    contadoresPendientes.addAll(lote);
+                } catch (Exception e) {
+                    // Reintentar en la siguiente escritura (o en vaciar)
+                    pendientes.addAll(lote);
+                    logError("Error escribiendo lote de " + lote.size() + " respuestas: " + e.getMessage());
+                }
+            }
+
+            // 2. Sumar sus resultados a los contadores de Participantes
+            List<RespuestasJugador> contadores = drenar(contadoresPendientes);
+            if (!contadores.isEmpty()) {
+                try {
+                    participantesDAO.acumularRespuestas(contadores);
+                } catch (Exception e) {
+                    contadoresPendientes.addAll(contadores);
+                    logError("Error actualizando contadores de " + contadores.size() + " respuestas: " + e.getMessage());
+                }
+            }
+        } finally {
+            escribiendo.unlock();
+        }
+    }
+
+    private static List<RespuestasJugador> drenar(ConcurrentLinkedQueue<RespuestasJugador> cola) {
+        List<RespuestasJugador> lote = new ArrayList<>();
+        RespuestasJugador r;
+        while ((r = cola.poll()) != null) {
+            lote.add(r);
+        }
+        return lote;
+    }
+
+    private void logError(String mensaje) {
+        System.err.println("[GAME:" + codigoSala + "] ERROR: " + mensaje);
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.sparkytrivia.websocket;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * PROTOCOLO BINARIO "sparky-bin-v1"
+ *
+ * Se negocia con el subprotocolo WebSocket en /game/{codigoSala}. Los clientes
+ * que no lo piden siguen recibiendo JSON. Los mensajes del cliente al servidor
+ * siguen siendo JSON, y los avisos poco frecuentes (CONECTADO, CHAT, inicio y
+ * fin de juego...) tambien: solo las tramas grandes o frecuentes son binarias.
+ *
+ * Cada trama empieza con 1 byte de tipo. Enteros como varint (LEB128 sin signo),
+ * "cambio" como varint zigzag, textos como varint longitud + UTF-8.
+ *
+ * 0x01 PREGUNTA:             numeroPregunta, totalPreguntas, preguntaId, puntos, limiteTiempo,
+ *                            tabla de textos (n, textos...): [0] contenido, [1] tipo, [2] imagen ("" = sin),
+ *                            opciones (n, [opcionId, indice del texto en la tabla]...)
+ * 0x02 RESPUESTA_CORRECTA:   preguntaId, opcionCorrectaId, explicacion ("" = sin)
+ * 0x03 RANKING:              total, n, jugadores..., 1 byte (1 = sigue miPosicion), [jugador]
+ * 0x04 RANKING completo:     igual que 0x03 pero con todos los jugadores (al reconectar)
+ * 0x05 RESPUESTA_CONFIRMADA: participanteId
+ * 0x06 RESPONDIERON:         respondieron, total
+ * 0x07 REANUDAR:             fase, tiempoRestanteMs, miRespuesta (0 = sin), y tres subtramas
+ *                            (varint largo + trama, largo 0 = no viene): pregunta (0x01),
+ *                            respuesta correcta (0x02) y ranking completo (0x04)
+ *
+ * jugador = posicion, nickname, puntaje, correctas, respondidas, cambio (zigzag)
+ *
+ * El decodificador del navegador esta en js/protocolo.js
+ */
+public final class ProtocoloBinario {
+
+    public static final String SUBPROTOCOLO = "sparky-bin-v1";
+
+    public static final byte PREGUNTA = 0x01;
+    public static final byte RESPUESTA_CORRECTA = 0x02;
+    public static final byte RANKING = 0x03;
+    public static final byte RANKING_COMPLETO = 0x04;
+    public static final byte RESPUESTA_CONFIRMADA = 0x05;
+    public static final byte RESPONDIERON = 0x06;
+    public static final byte REANUDAR = 0x07;
+
+    private ProtocoloBinario() {
+    }
+
+    public static byte[] respuestaConfirmada(int participanteId) {
+        return new Escritor(8)
+                .tipo(RESPUESTA_CONFIRMADA)
+                .varint(participanteId)
+                .bytes();
+    }
+
+    public static byte[] respondieron(int respondieron, int total) {
+        return new Escritor(12)
+                .tipo(RESPONDIERON)
+                .varint(respondieron)
+                .varint(total)
+                .bytes();
+    }
+
+    public static byte[] respuestaCorrecta(int preguntaId, int opcionCorrectaId, String explicacion) {
+        return new Escritor(16 + (explicacion != null ? explicacion.length() * 3 : 0))
+                .tipo(RESPUESTA_CORRECTA)
+                .varint(preguntaId)
+                .varint(opcionCorrectaId)
+                .texto(explicacion)
+                .bytes();
+    }
+
+    /**
+     * Unir una parte comun ya codificada con la parte propia de una sesion
+     */
+    public static ByteBuffer concatenar(byte[] comun, byte[] propio) {
+        byte[] trama = Arrays.copyOf(comun, comun.length + propio.length);
+        System.arraycopy(propio, 0, trama, comun.length, propio.length);
+        return ByteBuffer.wrap(trama);
+    }
+
+    /**
+     * Buffer de escritura que crece solo
+     */
+    public static final class Escritor {
+        private byte[] datos;
+        private int largo;
+
+        public Escritor(int capacidad) {
+            this.datos = new byte[Math.max(capacidad, 8)];
+        }
+
+        public Escritor tipo(byte tipo) {
+            asegurar(1);
+            datos[largo++] = tipo;
+            return this;
+        }
+
+        public Escritor bandera(boolean valor) {
+            asegurar(1);
+            datos[largo++] = (byte) (valor ? 1 : 0);
+            return this;
+        }
+
+        /**
+         * Entero sin signo en 7 bits por byte (negativos ocupan 5 bytes)
+         */
+        public Escritor varint(int valor) {
+            asegurar(5);
+            while ((valor & ~0x7F) != 0) {
+                datos[largo++] = (byte) ((valor & 0x7F) | 0x80);
+                valor >>>= 7;
+            }
+            datos[largo++] = (byte) valor;
+            return this;
+        }
+
+        /**
+         * Entero con signo: 0, -1, 1, -2... -> 0, 1, 2, 3...
+         */
+        public Escritor zigzag(int valor) {
+            return varint((valor << 1) ^ (valor >> 31));
+        }
+
+        public Escritor texto(String valor) {
+            byte[] utf8 = valor == null ? new byte[0] : valor.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length);
+            asegurar(utf8.length);
+            System.arraycopy(utf8, 0, datos, largo, utf8.length);
+            largo += utf8.length;
+            return this;
+        }
+
+        /**
+         * Otra trama completa dentro de esta (null = largo 0)
+         */
+        public Escritor subtrama(ByteBuffer trama) {
+            if (trama == null) {
+                return varint(0);
+            }
+            int n = trama.remaining();
+            varint(n);
+            asegurar(n);
+            trama.get(datos, largo, n);
+            largo += n;
+            return this;
+        }
+
+        public Escritor subtrama(byte[] trama) {
+            return subtrama(trama == null ? null : ByteBuffer.wrap(trama));
+        }
+
+        public byte[] bytes() {
+            return Arrays.copyOf(datos, largo);
+        }
+
+        private void asegurar(int extra) {
+            if (largo + extra > datos.length) {
+                datos = Arrays.copyOf(datos, Math.max(datos.length * 2, largo + extra));
+            }
+        }
+    }
+}
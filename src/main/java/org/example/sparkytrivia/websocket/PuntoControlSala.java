@@ -0,0 +1,241 @@
+package org.example.sparkytrivia.websocket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * PUNTO DE CONTROL DE UNA SALA EN JUEGO
+ *
+ * En cada cambio de fase el GameRoomThread agrega al final del archivo
+ * {directorio}/{codigoSala}.ckpt un registro compacto: pregunta actual,
+ * fase, hora limite y el marcador completo. Si Tomcat se reinicia a media
+ * partida, GameManager lee el ultimo registro valido y reanuda la sala.
+ *
+ * Registro: largo (int), CRC32 del contenido (int), contenido:
+ *   salaId, preguntaIndex (int), fase (texto), limiteEpochMs, escritoEpochMs (long),
+ *   n (int) y n veces [participanteId, puntaje, correctas, respondidas] (int)
+ *
+ * Un registro cortado por una caida no pasa el CRC y se ignora.
+ * Al cerrar cada pregunta el archivo se compacta (queda solo el ultimo
+ * registro, via archivo temporal + renombre atomico), asi no crece durante
+ * la partida. Al terminar la partida el archivo se borra.
+ *
+ * Configuracion:
+ *   -Dsparky.checkpoint.dir=...     (por defecto {java.io.tmpdir}/sparky-checkpoints)
+ *   -Dsparky.checkpoint.fsync=true  (forzar a disco cada registro; por defecto no)
+ */
+public class PuntoControlSala {
+
+    private static final Path DIRECTORIO = Paths.get(System.getProperty("sparky.checkpoint.dir",
+            Paths.get(System.getProperty("java.io.tmpdir"), "sparky-checkpoints").toString()));
+    private static final boolean FSYNC = Boolean.getBoolean("sparky.checkpoint.fsync");
+
+    private final String codigoSala;
+    private final Path archivo;
+    private FileChannel canal;
+
+    public PuntoControlSala(String codigoSala) {
+        this.codigoSala = codigoSala;
+        this.archivo = DIRECTORIO.resolve(codigoSala + ".ckpt");
+    }
+
+    /**
+     * Agregar un registro al final del archivo
+     * Un error de disco solo se registra: el juego sigue sin punto de control
+     */
+    public synchronized void escribir(int salaId, int preguntaIndex, String fase, long limiteEpochMs,
+                                      Collection<Marcador.Entrada> marcador) {
+        ByteBuffer registro = registro(salaId, preguntaIndex, fase, limiteEpochMs, marcador);
+        try {
+            if (canal == null) {
+                Files.createDirectories(DIRECTORIO);
+                canal = FileChannel.open(archivo, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            while (registro.hasRemaining()) {
+                canal.write(registro);
+            }
+            if (FSYNC) {
+                canal.force(false);
+            }
+        } catch (IOException e) {
+            System.err.println("[GAME:" + codigoSala + "] ERROR: No se pudo escribir el punto de control: " +
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Reemplazar el archivo por un unico registro (al cerrar una pregunta)
+     * Se escribe en {codigoSala}.ckpt.tmp y se renombra encima: una caida deja
+     * el archivo anterior o el nuevo, nunca uno a medias
+     */
+    public synchronized void compactar(int salaId, int preguntaIndex, String fase, long limiteEpochMs,
+                                       Collection<Marcador.Entrada> marcador) {
+        ByteBuffer registro = registro(salaId, preguntaIndex, fase, limiteEpochMs, marcador);
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try {
+            cerrar();
+            Files.createDirectories(DIRECTORIO);
+            try (FileChannel nuevo = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (registro.hasRemaining()) {
+                    nuevo.write(registro);
+                }
+                nuevo.force(false);
+            }
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("[GAME:" + codigoSala + "] ERROR: No se pudo compactar el punto de control: " +
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Cerrar el archivo sin borrarlo (partida interrumpida: queda para reanudar)
+     * El siguiente escribir() lo vuelve a abrir
+     */
+    public synchronized void cerrar() {
+        if (canal == null) {
+            return;
+        }
+        try {
+            canal.close();
+        } catch (IOException e) {
+            System.err.println("[GAME:" + codigoSala + "] ERROR: No se pudo cerrar el punto de control: " +
+                    e.getMessage());
+        } finally {
+            canal = null;
+        }
+    }
+
+    /**
+     * Registro listo para escribir: largo, CRC32 y contenido
+     */
+    private static ByteBuffer registro(int salaId, int preguntaIndex, String fase, long limiteEpochMs,
+                                       Collection<Marcador.Entrada> marcador) {
+        byte[] faseBytes = fase.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer contenido = ByteBuffer.allocate(4 + 4 + 2 + faseBytes.length + 8 + 8 + 4 + marcador.size() * 16);
+        contenido.putInt(salaId)
+                .putInt(preguntaIndex)
+                .putShort((short) faseBytes.length)
+                .put(faseBytes)
+                .putLong(limiteEpochMs)
+                .putLong(System.currentTimeMillis());
+
+        // El marcador puede crecer mientras se recorre: se cuenta lo escrito
+        int posicionN = contenido.position();
+        contenido.putInt(0);
+        int n = 0;
+        for (Marcador.Entrada entrada : marcador) {
+            if (contenido.remaining() < 16) {
+                break;
+            }
+            contenido.putInt(entrada.getParticipanteId())
+                    .putInt(entrada.getPuntaje())
+                    .putInt(entrada.getCorrectas())
+                    .putInt(entrada.getRespondidas());
+            n++;
+        }
+        contenido.putInt(posicionN, n);
+        contenido.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(contenido.duplicate());
+
+        ByteBuffer registro = ByteBuffer.allocate(8 + contenido.remaining());
+        registro.putInt(contenido.remaining()).putInt((int) crc.getValue()).put(contenido).flip();
+        return registro;
+    }
+
+    /**
+     * Cerrar y borrar el archivo (la partida termino)
+     */
+    public synchronized void borrar() {
+        cerrar();
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            System.err.println("[GAME:" + codigoSala + "] ERROR: No se pudo borrar el punto de control: " +
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Ultimo registro valido de una sala
+     *
+     * @return null si no hay archivo o ningun registro completo
+     */
+    public static Registro leerUltimo(String codigoSala) {
+        Path archivo = DIRECTORIO.resolve(codigoSala + ".ckpt");
+        if (!Files.exists(archivo)) {
+            return null;
+        }
+
+        ByteBuffer datos;
+        try {
+            datos = ByteBuffer.wrap(Files.readAllBytes(archivo));
+        } catch (IOException e) {
+            System.err.println("[GAME:" + codigoSala + "] ERROR: No se pudo leer el punto de control: " +
+                    e.getMessage());
+            return null;
+        }
+
+        Registro ultimo = null;
+        while (datos.remaining() >= 8) {
+            int largo = datos.getInt();
+            int crcEsperado = datos.getInt();
+            if (largo <= 0 || largo > datos.remaining()) {
+                break; // registro cortado
+            }
+            ByteBuffer contenido = datos.slice();
+            contenido.limit(largo);
+            datos.position(datos.position() + largo);
+
+            CRC32 crc = new CRC32();
+            crc.update(contenido.duplicate());
+            if ((int) crc.getValue() != crcEsperado) {
+                break;
+            }
+            ultimo = leerRegistro(contenido);
+        }
+        return ultimo;
+    }
+
+    private static Registro leerRegistro(ByteBuffer contenido) {
+        int salaId = contenido.getInt();
+        int preguntaIndex = contenido.getInt();
+        byte[] faseBytes = new byte[contenido.getShort()];
+        contenido.get(faseBytes);
+        long limiteEpochMs = contenido.getLong();
+        long escritoEpochMs = contenido.getLong();
+
+        int n = contenido.getInt();
+        List<Marcador.Entrada> marcador = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            marcador.add(new Marcador.Entrada(contenido.getInt(), contenido.getInt(),
+                    contenido.getInt(), contenido.getInt()));
+        }
+        return new Registro(salaId, preguntaIndex, new String(faseBytes, StandardCharsets.UTF_8),
+                limiteEpochMs, escritoEpochMs, marcador);
+    }
+
+    /**
+     * Estado de la sala en un punto de control
+     *
+     * @param preguntaIndex ultima pregunta abierta (0 = primera, -1 = ninguna)
+     */
+    public record Registro(int salaId, int preguntaIndex, String fase, long limiteEpochMs,
+                           long escritoEpochMs, List<Marcador.Entrada> marcador) {
+    }
+}
@@ -0,0 +1,214 @@
+package org.example.sparkytrivia.websocket;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * RANKING ORDENADO E INDEXADO DE UNA SALA
+ *
+ * Arbol (treap) donde cada nodo guarda el tamano de su subarbol, ordenado
+ * igual que ParticipantesDAO.obtenerRanking: puntaje DESC, unio ASC
+ * (y participanteId para desempatar).
+ *
+ * - actualizar puntaje:     O(log n)
+ * - posicion de un jugador: O(log n)
+ * - top N:                  O(log n + N)
+ *
+ * Asi el ranking de cada pregunta no consulta la BD ni ordena toda la sala.
+ */
+public class RankingIndexado {
+
+    private final Map<Integer, Nodo> nodos = new HashMap<>();
+    private final SplittableRandom aleatorio = new SplittableRandom();
+    private Nodo raiz;
+
+    /**
+     * Agregar (o reemplazar) a un participante
+     *
+     * @param ordenUnion momento de union en ms (Long.MAX_VALUE si no se conoce: va al final)
+     */
+    public synchronized void agregar(int participanteId, int puntaje, long ordenUnion) {
+        Nodo anterior = nodos.remove(participanteId);
+        if (anterior != null) {
+            raiz = quitar(raiz, anterior);
+        }
+        Nodo nodo = new Nodo(participanteId, puntaje, ordenUnion, aleatorio.nextInt());
+        nodos.put(participanteId, nodo);
+        raiz = insertar(raiz, nodo);
+    }
+
+    /**
+     * Mover a un participante a su nuevo puntaje
+     */
+    public synchronized void actualizar(int participanteId, int puntaje) {
+        Nodo nodo = nodos.get(participanteId);
+        if (nodo == null || nodo.puntaje == puntaje) {
+            return;
+        }
+        raiz = quitar(raiz, nodo);
+        nodo.puntaje = puntaje;
+        nodo.izq = null;
+        nodo.der = null;
+        nodo.tamano = 1;
+        raiz = insertar(raiz, nodo);
+    }
+
+    /**
+     * Posicion (1 = primero) de un participante, o -1 si no esta
+     */
+    public synchronized int posicion(int participanteId) {
+        Nodo buscado = nodos.get(participanteId);
+        if (buscado == null) {
+            return -1;
+        }
+        int antes = 0;
+        Nodo actual = raiz;
+        while (actual != null) {
+            int c = comparar(buscado, actual);
+            if (c < 0) {
+                actual = actual.izq;
+            } else if (c > 0) {
+                antes += tamano(actual.izq) + 1;
+                actual = actual.der;
+            } else {
+                return antes + tamano(actual.izq) + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Los primeros N participanteId en orden de ranking
+     */
+    public synchronized List<Integer> top(int n) {
+        List<Integer> resultado = new ArrayList<>(Math.min(n, nodos.size()));
+        ArrayDeque<Nodo> pila = new ArrayDeque<>();
+        Nodo actual = raiz;
+        while ((actual != null || !pila.isEmpty()) && resultado.size() < n) {
+            while (actual != null) {
+                pila.push(actual);
+                actual = actual.izq;
+            }
+            actual = pila.pop();
+            resultado.add(actual.participanteId);
+            actual = actual.der;
+        }
+        return resultado;
+    }
+
+    public synchronized int size() {
+        return nodos.size();
+    }
+
+    // ---------- treap ----------
+
+    private static Nodo insertar(Nodo arbol, Nodo nodo) {
+        if (arbol == null) {
+            return nodo;
+        }
+        if (nodo.prioridad > arbol.prioridad) {
+            Nodo[] partes = dividir(arbol, nodo);
+            nodo.izq = partes[0];
+            nodo.der = partes[1];
+            recalcular(nodo);
+            return nodo;
+        }
+        if (comparar(nodo, arbol) < 0) {
+            arbol.izq = insertar(arbol.izq, nodo);
+        } else {
+            arbol.der = insertar(arbol.der, nodo);
+        }
+        recalcular(arbol);
+        return arbol;
+    }
+
+    private static Nodo quitar(Nodo arbol, Nodo nodo) {
+        if (arbol == null) {
+            return null;
+        }
+        if (arbol == nodo) {
+            return unir(arbol.izq, arbol.der);
+        }
+        if (comparar(nodo, arbol) < 0) {
+            arbol.izq = quitar(arbol.izq, nodo);
+        } else {
+            arbol.der = quitar(arbol.der, nodo);
+        }
+        recalcular(arbol);
+        return arbol;
+    }
+
+    /**
+     * Separar en [menores que nodo, mayores que nodo]
+     */
+    private static Nodo[] dividir(Nodo arbol, Nodo nodo) {
+        if (arbol == null) {
+            return new Nodo[]{null, null};
+        }
+        if (comparar(arbol, nodo) < 0) {
+            Nodo[] partes = dividir(arbol.der, nodo);
+            arbol.der = partes[0];
+            recalcular(arbol);
+            return new Nodo[]{arbol, partes[1]};
+        }
+        Nodo[] partes = dividir(arbol.izq, nodo);
+        arbol.izq = partes[1];
+        recalcular(arbol);
+        return new Nodo[]{partes[0], arbol};
+    }
+
+    private static Nodo unir(Nodo izq, Nodo der) {
+        if (izq == null) return der;
+        if (der == null) return izq;
+        if (izq.prioridad > der.prioridad) {
+            izq.der = unir(izq.der, der);
+            recalcular(izq);
+            return izq;
+        }
+        der.izq = unir(izq, der.izq);
+        recalcular(der);
+        return der;
+    }
+
+    /**
+     * Orden del ranking: puntaje DESC, union ASC, participanteId ASC
+     */
+    private static int comparar(Nodo a, Nodo b) {
+        if (a.puntaje != b.puntaje) {
+            return a.puntaje > b.puntaje ? -1 : 1;
+        }
+        if (a.ordenUnion != b.ordenUnion) {
+            return a.ordenUnion < b.ordenUnion ? -1 : 1;
+        }
+        return Integer.compare(a.participanteId, b.participanteId);
+    }
+
+    private static int tamano(Nodo nodo) {
+        return nodo == null ? 0 : nodo.tamano;
+    }
+
+    private static void recalcular(Nodo nodo) {
+        nodo.tamano = tamano(nodo.izq) + tamano(nodo.der) + 1;
+    }
+
+    private static final class Nodo {
+        private final int participanteId;
+        private final long ordenUnion;
+        private final int prioridad;
+        private int puntaje;
+        private int tamano = 1;
+        private Nodo izq;
+        private Nodo der;
+
+        Nodo(int participanteId, int puntaje, long ordenUnion, int prioridad) {
+            this.participanteId = participanteId;
+            this.puntaje = puntaje;
+            this.ordenUnion = ordenUnion;
+            this.prioridad = prioridad;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.example.sparkytrivia.websocket;
+
+import jakarta.websocket.Session;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * REGISTRO DE CONEXIONES WEBSOCKET
+ *
+ * Una Conexion por sesion abierta, indexada por sesion, sala, participante
+ * y usuario. Las busquedas (para enviar) son O(1) y sin candado; altas,
+ * UNIRSE y bajas actualizan todos los indices juntos, en un solo paso.
+ *
+ * Un participante tiene a lo mucho una conexion: si se une desde otra
+ * pestana, identificar() devuelve la conexion anterior para cerrarla.
+ */
+public class RegistroSesiones {
+
+    private final Map<String, Conexion> porSesion = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Conexion>> porSala = new ConcurrentHashMap<>();
+    private final Map<Integer, Conexion> porParticipante = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Conexion>> porUsuario = new ConcurrentHashMap<>();
+
+    /**
+     * Alta de una sesion recien abierta en una sala
+     */
+    public synchronized Conexion registrar(Session session, String codigoSala) {
+        Conexion conexion = new Conexion(session, codigoSala);
+        porSesion.put(conexion.sessionId, conexion);
+        porSala.computeIfAbsent(codigoSala, k -> new ConcurrentHashMap<>()).put(conexion.sessionId, conexion);
+        return conexion;
+    }
+
+    /**
+     * Asociar la conexion con su usuario y participante (mensaje UNIRSE)
+     * El llamador ya verifico que el participante es de ese usuario y de la sala.
+     * Un segundo UNIRSE en la misma sesion reemplaza la identidad anterior
+     *
+     * @return la conexion que tenia antes este participante (otra pestana), o null
+     */
+    public synchronized Conexion identificar(Conexion conexion, int usuarioId, Integer participanteId) {
+        if (!conexion.activa) {
+            return null; // se dio de baja mientras llegaba el UNIRSE
+        }
+        olvidarIdentidad(conexion);
+
+        conexion.usuarioId = usuarioId;
+        conexion.participanteId = participanteId;
+        porUsuario.computeIfAbsent(usuarioId, k -> ConcurrentHashMap.newKeySet()).add(conexion);
+
+        if (participanteId == null) {
+            return null;
+        }
+        Conexion anterior = porParticipante.put(participanteId, conexion);
+        return anterior == conexion ? null : anterior;
+    }
+
+    /**
+     * Quitar la conexion de porParticipante y porUsuario (lock tomado)
+     * Los campos se quedan: despuesDeBaja todavia los lee
+     */
+    private void olvidarIdentidad(Conexion conexion) {
+        if (conexion.participanteId != null) {
+            // Solo si sigue siendo la suya (otra pestana pudo tomar su lugar)
+            porParticipante.remove(conexion.participanteId, conexion);
+        }
+        if (conexion.usuarioId != null) {
+            Set<Conexion> delUsuario = porUsuario.get(conexion.usuarioId);
+            if (delUsuario != null) {
+                delUsuario.remove(conexion);
+                if (delUsuario.isEmpty()) {
+                    porUsuario.remove(conexion.usuarioId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Baja de una sesion de todos los indices
+     *
+     * @return la conexion quitada, o null si no estaba registrada
+     */
+    public synchronized Conexion quitar(String sessionId) {
+        Conexion conexion = porSesion.remove(sessionId);
+        if (conexion == null) {
+            return null;
+        }
+        conexion.activa = false;
+
+        Map<String, Conexion> sala = porSala.get(conexion.codigoSala);
+        if (sala != null) {
+            sala.remove(sessionId);
+            if (sala.isEmpty()) {
+                porSala.remove(conexion.codigoSala);
+            }
+        }
+        olvidarIdentidad(conexion);
+        conexion.cola.cerrar();
+        return conexion;
+    }
+
+    public Conexion buscarPorSesion(String sessionId) {
+        return porSesion.get(sessionId);
+    }
+
+    public Conexion buscarPorParticipante(int participanteId) {
+        return porParticipante.get(participanteId);
+    }
+
+    /**
+     * Conexiones abiertas de un usuario (mas de una = varias pestanas o dispositivos)
+     */
+    public Set<Conexion> buscarPorUsuario(int usuarioId) {
+        Set<Conexion> conexiones = porUsuario.get(usuarioId);
+        return conexiones != null ? Collections.unmodifiableSet(conexiones) : Collections.emptySet();
+    }
+
+    /**
+     * Foto de las conexiones de una sala (para recorrerla sin candado)
+     */
+    public Conexion[] deSala(String codigoSala) {
+        Map<String, Conexion> sala = porSala.get(codigoSala);
+        return sala != null ? sala.values().toArray(new Conexion[0]) : null;
+    }
+
+    public int contarSala(String codigoSala) {
+        Map<String, Conexion> sala = porSala.get(codigoSala);
+        return sala != null ? sala.size() : 0;
+    }
+
+    /**
+     * Una sesion abierta: su sala, quien es y su cola de salida
+     */
+    public static final class Conexion {
+        private final Session session;
+        private final String sessionId;
+        private final String codigoSala;
+        private final ColaSalida cola;
+        private final boolean binaria;
+        private volatile Integer usuarioId;
+        private volatile Integer participanteId;
+        private volatile int rttMs;
+        private volatile long ultimoLatidoNanos;
+        private volatile boolean activa = true;
+
+        Conexion(Session session, String codigoSala) {
+            this.session = session;
+            this.sessionId = session.getId();
+            this.codigoSala = codigoSala;
+            this.cola = new ColaSalida(session);
+            this.binaria = ProtocoloBinario.SUBPROTOCOLO.equals(session.getNegotiatedSubprotocol());
+        }
+
+        public Session getSession() {
+            return session;
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public String getCodigoSala() {
+            return codigoSala;
+        }
+
+        public ColaSalida getCola() {
+            return cola;
+        }
+
+        /**
+         * Negocio el protocolo binario (ProtocoloBinario)
+         */
+        public boolean esBinaria() {
+            return binaria;
+        }
+
+        public Integer getUsuarioId() {
+            return usuarioId;
+        }
+
+        /**
+         * @return el participanteId, o -1 si no es jugador (ej. el host)
+         */
+        public int getParticipanteId() {
+            Integer id = participanteId;
+            return id != null ? id : -1;
+        }
+
+        public int getRttMs() {
+            return rttMs;
+        }
+
+        void setRttMs(int rttMs) {
+            this.rttMs = rttMs;
+        }
+
+        /**
+         * Marcar que llego un mensaje de esta sesion (RuedaLatidos)
+         */
+        public void tocar() {
+            ultimoLatidoNanos = System.nanoTime();
+        }
+
+        public long getUltimoLatidoNanos() {
+            return ultimoLatidoNanos;
+        }
+
+        /**
+         * false una vez quitada del registro
+         */
+        public boolean estaActiva() {
+            return activa;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package org.example.sparkytrivia.websocket;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.example.sparkytrivia.dao.PreguntasDAO;
+import org.example.sparkytrivia.dao.TriviaDAO;
+import org.example.sparkytrivia.model.Preguntas;
+import org.example.sparkytrivia.model.Trivia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * LECTURA Y REPETICION DE LA BITACORA DE EVENTOS (BitacoraEventos)
+ *
+ * - leer(): los eventos de una partida en orden, segmento por segmento
+ * - reconstruirRanking(): el ranking final solo con la bitacora (auditoria)
+ * - reproducir(): volver a transmitir una partida terminada a N veces la
+ *   velocidad en una sala de espectadores "{codigoSala}-R{n}" (se ve con
+ *   juego.html?codigo=...). Las tramas de pregunta salen de la BD/CacheTramas.
+ */
+public final class ReproductorBitacora {
+
+    // Margen para que los espectadores se conecten antes del primer evento
+    private static final int ESPERA_INICIAL = 5000;
+    private static final int TOP_RANKING = 10;
+    private static final int INTERVALO_CONTEO = 250; // como GameRoomThread: "X/Y respondieron" agrupado
+    // Repeticiones simultaneas de una misma sala (cada una es una sala de espectadores mas)
+    private static final int MAX_POR_SALA = Integer.getInteger("sparky.repeticion.max", 2);
+
+    private static final Set<String> salasEspectadores = ConcurrentHashMap.newKeySet();
+    private static final Map<String, Integer> enCurso = new ConcurrentHashMap<>();
+    private static final AtomicInteger contador = new AtomicInteger();
+    private static final Gson gson = new Gson();
+
+    private ReproductorBitacora() {
+    }
+
+    /**
+     * Un evento leido: el contenido queda posicionado al inicio
+     */
+    public record Evento(byte tipo, long epochMs, ByteBuffer datos) {
+    }
+
+    /**
+     * Una fila del ranking reconstruido
+     */
+    public record Posicion(int posicion, int participanteId, String nickname,
+                           int puntaje, int correctas, int respondidas) {
+    }
+
+    /**
+     * Partidas terminadas de una sala, de la mas antigua a la mas reciente
+     */
+    public static List<Path> partidas(String codigoSala) throws IOException {
+        Path sala = BitacoraEventos.DIRECTORIO.resolve(codigoSala);
+        if (!Files.isDirectory(sala)) {
+            return List.of();
+        }
+        try (Stream<Path> carpetas = Files.list(sala)) {
+            return carpetas.filter(Files::isDirectory)
+                    .filter(p -> !p.getFileName().toString().equals(BitacoraEventos.ACTUAL))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Todos los eventos de una partida (los segmentos se leen mapeados en memoria)
+     */
+    public static List<Evento> leer(Path partida) throws IOException {
+        List<Path> segmentos;
+        try (Stream<Path> archivos = Files.list(partida)) {
+            segmentos = archivos.filter(p -> p.toString().endsWith(".seg")).sorted().collect(Collectors.toList());
+        }
+
+        List<Evento> eventos = new ArrayList<>();
+        for (Path archivo : segmentos) {
+            MappedByteBuffer datos;
+            try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+                datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            }
+            // Los segmentos no se recortan: lo escrito termina en el primer tipo 0
+            while (datos.remaining() >= BitacoraEventos.CABECERA) {
+                byte tipo = datos.get();
+                if (tipo == 0) {
+                    break;
+                }
+                int largo = datos.getShort() & 0xFFFF;
+                long epochMs = datos.getLong();
+                if (largo > datos.remaining()) {
+                    break;
+                }
+                ByteBuffer contenido = datos.slice();
+                contenido.limit(largo);
+                datos.position(datos.position() + largo);
+                eventos.add(new Evento(tipo, epochMs, contenido));
+            }
+        }
+        return eventos;
+    }
+
+    /**
+     * RANKING FINAL SOLO DESDE LA BITACORA
+     * Contadores iniciales de PARTICIPANTE + cada PUNTAJE, con el mismo
+     * desempate que el juego (Marcador / RankingIndexado)
+     */
+    public static List<Posicion> reconstruirRanking(Path partida) throws IOException {
+        Marcador marcador = new Marcador();
+        Map<Integer, String> nicknames = new HashMap<>();
+        for (Evento evento : leer(partida)) {
+            aplicar(evento, marcador, nicknames);
+        }
+
+        List<Posicion> ranking = new ArrayList<>();
+        int posicion = 1;
+        for (Integer id : marcador.top(marcador.size())) {
+            Marcador.Entrada entrada = marcador.obtener(id);
+            ranking.add(new Posicion(posicion++, id, nicknames.get(id),
+                    entrada.getPuntaje(), entrada.getCorrectas(), entrada.getRespondidas()));
+        }
+        return ranking;
+    }
+
+    /**
+     * Aplicar al marcador los eventos que lo cambian
+     */
+    private static void aplicar(Evento evento, Marcador marcador, Map<Integer, String> nicknames) {
+        ByteBuffer d = evento.datos().duplicate();
+        if (evento.tipo() == BitacoraEventos.PARTICIPANTE) {
+            int participanteId = d.getInt();
+            long ordenUnion = d.getLong();
+            int puntaje = d.getInt();
+            int correctas = d.getInt();
+            int respondidas = d.getInt();
+            byte[] nick = new byte[d.getShort() & 0xFFFF];
+            d.get(nick);
+            // En una partida reanudada el participante se repite: gana el primero
+            if (marcador.obtener(participanteId) == null) {
+                marcador.agregar(participanteId, puntaje, correctas, respondidas, ordenUnion);
+                nicknames.put(participanteId, new String(nick, StandardCharsets.UTF_8));
+            }
+        } else if (evento.tipo() == BitacoraEventos.PUNTAJE) {
+            int participanteId = d.getInt();
+            d.getInt(); // preguntaId
+            d.getInt(); // tiempoMs
+            int puntos = d.getInt();
+            boolean correcta = d.get() == 1;
+            marcador.registrarRespuesta(participanteId, puntos, correcta);
+        }
+    }
+
+    public static boolean esSalaEspectadores(String codigoSala) {
+        return salasEspectadores.contains(codigoSala);
+    }
+
+    /**
+     * REPETIR UNA PARTIDA TERMINADA PARA ESPECTADORES
+     *
+     * @param velocidad 1 = tiempo real, 4 = cuatro veces mas rapido
+     * @return codigo de la sala de espectadores, o null si la sala ya tiene
+     *         MAX_POR_SALA repeticiones en curso
+     */
+    public static String reproducir(String codigoSala, Path partida, double velocidad) throws IOException {
+        // Reservar el lugar antes de leer la bitacora y cargar la trivia
+        Integer activas = enCurso.merge(codigoSala, 1, Integer::sum);
+        if (activas > MAX_POR_SALA) {
+            liberar(codigoSala);
+            return null;
+        }
+
+        boolean programada = false;
+        try {
+            List<Evento> eventos = leer(partida);
+            if (eventos.isEmpty() || eventos.get(0).tipo() != BitacoraEventos.PARTIDA) {
+                throw new IOException("Bitacora vacia o sin inicio de partida: " + partida);
+            }
+
+            ByteBuffer inicio = eventos.get(0).datos().duplicate();
+            inicio.getInt(); // salaId
+            int triviaId = inicio.getInt();
+            long version = CacheTramas.version(triviaId);
+            Trivia trivia = new TriviaDAO().buscarPorId(triviaId);
+            List<Preguntas> preguntas = new PreguntasDAO().listarPorTrivia(triviaId);
+            GameSnapshot snapshot = GameSnapshot.crear(trivia, preguntas, version);
+
+            String codigoEspectadores = codigoSala + "-R" + contador.incrementAndGet();
+            salasEspectadores.add(codigoEspectadores);
+            System.out.println("[REPLAY:" + codigoEspectadores + "] Repitiendo " + partida + " (" +
+                    eventos.size() + " eventos, x" + velocidad + ")");
+
+            Repeticion repeticion = new Repeticion(codigoSala, codigoEspectadores, eventos, snapshot, velocidad);
+            GameEngine.getInstance().programar(() -> repeticion.emitirDesde(0), ESPERA_INICIAL);
+            programada = true;
+            return codigoEspectadores;
+        } finally {
+            if (!programada) {
+                liberar(codigoSala);
+            }
+        }
+    }
+
+    /**
+     * Devolver el lugar de una repeticion; el contador se borra al llegar a 0
+     */
+    private static void liberar(String codigoSala) {
+        enCurso.computeIfPresent(codigoSala, (c, activas) -> activas <= 1 ? null : activas - 1);
+    }
+
+    /**
+     * Una repeticion en curso: emite los eventos en orden, cada uno programado
+     * en el GameEngine a (diferencia con el anterior / velocidad)
+     */
+    private static final class Repeticion {
+        private final String salaOrigen;
+        private final String sala;
+        private final List<Evento> eventos;
+        private final GameSnapshot snapshot;
+        private final double velocidad;
+        private final Marcador marcador = new Marcador();
+        private final Map<Integer, String> nicknames = new HashMap<>();
+        private Map<Integer, Integer> posicionesAnteriores = new HashMap<>();
+        private final AtomicBoolean conteoProgramado = new AtomicBoolean(false);
+        private int preguntaIndex = -1;
+        private volatile int respondieron;
+
+        Repeticion(String salaOrigen, String sala, List<Evento> eventos, GameSnapshot snapshot, double velocidad) {
+            this.salaOrigen = salaOrigen;
+            this.sala = sala;
+            this.eventos = eventos;
+            this.snapshot = snapshot;
+            this.velocidad = velocidad;
+        }
+
+        void emitirDesde(int i) {
+            try {
+                // Todo lo que ocurrio en el mismo milisegundo sale junto
+                long momento = eventos.get(i).epochMs();
+                while (i < eventos.size() && eventos.get(i).epochMs() == momento) {
+                    emitir(eventos.get(i++));
+                }
+            } catch (Exception e) {
+                System.err.println("[REPLAY:" + sala + "] ERROR: " + e.getMessage());
+                terminar();
+                return;
+            }
+
+            if (i >= eventos.size()) {
+                terminar();
+                return;
+            }
+            int siguiente = i;
+            long espera = (long) ((eventos.get(i).epochMs() - eventos.get(i - 1).epochMs()) / velocidad);
+            GameEngine.getInstance().programar(() -> emitirDesde(siguiente), Math.max(0, espera));
+        }
+
+        private void emitir(Evento evento) {
+            aplicar(evento, marcador, nicknames);
+            ByteBuffer d = evento.datos().duplicate();
+
+            switch (evento.tipo()) {
+                case BitacoraEventos.PREGUNTA:
+                    preguntaIndex = d.getInt();
+                    respondieron = 0;
+                    if (preguntaIndex < snapshot.size()) {
+                        GameWebSocket.broadcast(sala, snapshot.get(preguntaIndex).getTramaPregunta());
+                    }
+                    break;
+                case BitacoraEventos.RESPUESTA:
+                    respondieron++;
+                    if (conteoProgramado.compareAndSet(false, true)) {
+                        GameEngine.getInstance().programar(this::enviarRespondieron, INTERVALO_CONTEO);
+                    }
+                    break;
+                case BitacoraEventos.RANKING:
+                    if (preguntaIndex >= 0 && preguntaIndex < snapshot.size()
+                            && snapshot.get(preguntaIndex).getTramaRespuestaCorrecta() != null) {
+                        GameWebSocket.broadcast(sala, snapshot.get(preguntaIndex).getTramaRespuestaCorrecta());
+                    }
+                    enviarRanking();
+                    break;
+                case BitacoraEventos.FIN:
+                    enviarFin();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void enviarRespondieron() {
+            conteoProgramado.set(false);
+            int respondieron = this.respondieron;
+            int total = marcador.size();
+            JsonObject conteo = new JsonObject();
+            conteo.addProperty("tipo", "RESPONDIERON");
+            conteo.addProperty("respondieron", respondieron);
+            conteo.addProperty("total", total);
+            GameWebSocket.broadcast(sala, new CacheTramas.Trama(gson.toJson(conteo),
+                    ProtocoloBinario.respondieron(respondieron, total)), ColaSalida.Clase.NORMAL);
+        }
+
+        private void enviarRanking() {
+            Map<Integer, Integer> actuales = new HashMap<>();
+            List<Integer> todos = marcador.top(marcador.size());
+            for (int p = 0; p < todos.size(); p++) {
+                actuales.put(todos.get(p), p + 1);
+            }
+
+            JsonArray top = new JsonArray();
+            for (int p = 0; p < Math.min(TOP_RANKING, todos.size()); p++) {
+                int id = todos.get(p);
+                Marcador.Entrada entrada = marcador.obtener(id);
+                Integer anterior = posicionesAnteriores.get(id);
+                JsonObject jugador = new JsonObject();
+                jugador.addProperty("posicion", p + 1);
+                jugador.addProperty("nickname", nicknames.get(id));
+                jugador.addProperty("puntaje", entrada.getPuntaje());
+                jugador.addProperty("correctas", entrada.getCorrectas());
+                jugador.addProperty("respondidas", entrada.getRespondidas());
+                jugador.addProperty("cambio", anterior == null ? 0 : anterior - (p + 1));
+                top.add(jugador);
+            }
+            posicionesAnteriores = actuales;
+
+            JsonObject mensaje = new JsonObject();
+            mensaje.addProperty("tipo", "RANKING");
+            mensaje.addProperty("total", marcador.size());
+            mensaje.add("top", top);
+            GameWebSocket.broadcast(sala, gson.toJson(mensaje), null, ColaSalida.Clase.RANKING);
+        }
+
+        private void enviarFin() {
+            JsonArray rankingArray = new JsonArray();
+            int posicion = 1;
+            for (Integer id : marcador.top(marcador.size())) {
+                Marcador.Entrada entrada = marcador.obtener(id);
+                JsonObject jugador = new JsonObject();
+                jugador.addProperty("rangoFinal", posicion++);
+                jugador.addProperty("nickname", nicknames.get(id));
+                jugador.addProperty("puntajeFinal", entrada.getPuntaje());
+                jugador.addProperty("correctas", entrada.getCorrectas());
+                jugador.addProperty("respondidas", entrada.getRespondidas());
+                rankingArray.add(jugador);
+            }
+
+            JsonObject mensajeFin = new JsonObject();
+            mensajeFin.addProperty("tipo", "JUEGO_FINALIZADO");
+            mensajeFin.addProperty("mensaje", "Repeticion terminada!");
+            mensajeFin.add("rankingFinal", rankingArray);
+            GameWebSocket.broadcast(sala, gson.toJson(mensajeFin), null, ColaSalida.Clase.CRITICO);
+        }
+
+        private void terminar() {
+            salasEspectadores.remove(sala);
+            liberar(salaOrigen);
+            System.out.println("[REPLAY:" + sala + "] Repeticion terminada");
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.sparkytrivia.websocket;
+
+/**
+ * Respuesta de un jugador tal como llega por WebSocket, solo con primitivos
+ *
+ * @param tiempoTomado   segundos reportados por el cliente (solo informativo)
+ * @param recibidaNanos  System.nanoTime() en el momento en que el servidor la recibio
+ * @param rttMs          ida y vuelta medido con PING/PONG para esa sesion (0 si no se conoce)
+ */
+public record RespuestaRecibida(int participanteId, int preguntaId, int opcionId,
+                                int tiempoTomado, long recibidaNanos, int rttMs) {
+}
@@ -0,0 +1,121 @@
+package org.example.sparkytrivia.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * RUEDA DE LATIDOS (hashed timing wheel)
+ *
+ * Detecta sesiones muertas sin un temporizador por sesion. Cada conexion
+ * guarda la hora de su ultimo mensaje (un volatile, RegistroSesiones.Conexion.tocar)
+ * y esta en una ranura de la rueda. Un solo tick por segundo en el GameEngine
+ * revisa unicamente la ranura que vence:
+ *  - si la conexion ya se dio de baja, se suelta
+ *  - si tuvo mensajes desde entonces, se vuelve a colocar donde vence ahora
+ *  - si no, expiro: se avisa una sola vez
+ *
+ * Cada conexion se revisa a lo mucho una vez por periodo de expiracion,
+ * y tocarla al recibir un mensaje no mueve nada en la rueda.
+ *
+ * El tick corre en cualquier hilo del motor: un candado evita que dos ticks
+ * se crucen y que una conexion se coloque con el cursor a medio avanzar.
+ *
+ * Configuracion:
+ *   -Dsparky.ws.latido.expiracion=20000  (ms sin mensajes; el cliente manda PING cada 5 s)
+ *   -Dsparky.ws.latido.tick=1000         (ms por ranura)
+ */
+public class RuedaLatidos {
+
+    private static final int RANURAS = 64; // potencia de 2
+
+    private final long tickNanos;
+    private final long expiracionNanos;
+    private final Consumer<RegistroSesiones.Conexion> alExpirar;
+    private final ConcurrentLinkedQueue<RegistroSesiones.Conexion>[] ranuras;
+
+    // Ranura que toca revisar; solo la mueve el tick. Ambos bajo giro
+    private final ReentrantLock giro = new ReentrantLock();
+    private int cursor;
+
+    public RuedaLatidos(long tickMs, long expiracionMs, Consumer<RegistroSesiones.Conexion> alExpirar) {
+        this.tickNanos = tickMs * 1_000_000L;
+        this.expiracionNanos = expiracionMs * 1_000_000L;
+        this.alExpirar = alExpirar;
+        @SuppressWarnings("unchecked")
+        ConcurrentLinkedQueue<RegistroSesiones.Conexion>[] tabla =
+                (ConcurrentLinkedQueue<RegistroSesiones.Conexion>[]) new ConcurrentLinkedQueue<?>[RANURAS];
+        for (int i = 0; i < RANURAS; i++) {
+            tabla[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.ranuras = tabla;
+        GameEngine.getInstance().programarPeriodica(this::tick, tickMs, tickMs);
+    }
+
+    public static RuedaLatidos desdeConfiguracion(Consumer<RegistroSesiones.Conexion> alExpirar) {
+        return new RuedaLatidos(Long.getLong("sparky.ws.latido.tick", 1000),
+                Long.getLong("sparky.ws.latido.expiracion", 20000), alExpirar);
+    }
+
+    /**
+     * Empezar a vigilar una conexion recien abierta
+     */
+    public void vigilar(RegistroSesiones.Conexion conexion) {
+        conexion.tocar();
+        colocar(conexion, System.nanoTime());
+    }
+
+    /**
+     * Poner la conexion en la ranura donde vence su ultimo latido
+     * (si vence mas lejos que una vuelta, en la ultima: se revisa antes y se recoloca)
+     */
+    private void colocar(RegistroSesiones.Conexion conexion, long ahora) {
+        long faltan = conexion.getUltimoLatidoNanos() + expiracionNanos - ahora;
+        long ticks = Math.max(1, Math.min(RANURAS - 1, (faltan + tickNanos - 1) / tickNanos));
+        giro.lock();
+        try {
+            ranuras[(int) ((cursor + ticks) & (RANURAS - 1))].offer(conexion);
+        } finally {
+            giro.unlock();
+        }
+    }
+
+    private void tick() {
+        List<RegistroSesiones.Conexion> expiradas = new ArrayList<>();
+
+        giro.lock();
+        try {
+            int actual = (cursor + 1) & (RANURAS - 1);
+            cursor = actual;
+
+            long ahora = System.nanoTime();
+            ConcurrentLinkedQueue<RegistroSesiones.Conexion> ranura = ranuras[actual];
+            // Vaciar hasta que poll devuelva null (size() recorre toda la cola): con giro
+            // tomado nadie agrega a esta ranura y colocar nunca usa la del cursor (ticks >= 1)
+            RegistroSesiones.Conexion conexion;
+            while ((conexion = ranura.poll()) != null) {
+                if (!conexion.estaActiva()) {
+                    continue;
+                }
+                if (ahora - conexion.getUltimoLatidoNanos() < expiracionNanos) {
+                    colocar(conexion, ahora);
+                    continue;
+                }
+                expiradas.add(conexion);
+            }
+        } finally {
+            giro.unlock();
+        }
+
+        // Avisar fuera del candado: la baja toca el registro y manda mensajes
+        for (RegistroSesiones.Conexion conexion : expiradas) {
+            try {
+                alExpirar.accept(conexion);
+            } catch (RuntimeException e) {
+                System.err.println("[WS] Error expirando sesion " + conexion.getSessionId() + ": " + e.getMessage());
+            }
+        }
+    }
+}
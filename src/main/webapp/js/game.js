@@ -1,4 +1,6 @@
 
+// Requiere js/protocolo.js (decodificador del protocolo binario)
+
 // Variables globales del juego
 let websocket = null;
 let codigoSala = null;
@@ -11,7 +13,7 @@ let puedeResponder = true;
 
 // Configuración
 const WS_RECONNECT_DELAY = 3000; // 3 segundos
-const HEARTBEAT_INTERVAL = 30000; // 30 segundos
+const HEARTBEAT_INTERVAL = 5000; // 5 segundos (el servidor expira sesiones sin latido a los 20)
 
 
 function iniciarConexionWebSocket(codigo, user, participante) {
@@ -43,7 +45,9 @@ function conectarWebSocket() {
     console.log(' Conectando a:', wsUrl);
 
     try {
-        websocket = new WebSocket(wsUrl);
+        // Protocolo binario compacto (js/protocolo.js); si no se negocia, JSON
+        websocket = new WebSocket(wsUrl, [ProtocoloSparky.SUBPROTOCOLO]);
+        websocket.binaryType = 'arraybuffer';
 
         websocket.onopen = onWebSocketOpen;
         websocket.onmessage = onWebSocketMessage;
@@ -77,7 +81,7 @@ function onWebSocketMessage(event) {
     console.log(' Mensaje recibido:', event.data);
 
     try {
-        const mensaje = JSON.parse(event.data);
+        const mensaje = ProtocoloSparky.leerMensaje(event.data);
 
         switch (mensaje.tipo) {
             case 'CONECTADO':
@@ -93,7 +97,12 @@ function onWebSocketMessage(event) {
                 break;
 
             case 'RANKING':
-                actualizarRanking(mensaje.ranking);
+                // Lista completa al reconectar, si no top 10
+                actualizarRanking(mensaje.ranking || mensaje.top || []);
+                break;
+
+            case 'REANUDAR':
+                manejarReanudar(mensaje);
                 break;
 
             case 'JUEGO_FINALIZADO':
@@ -101,7 +110,8 @@ function onWebSocketMessage(event) {
                 break;
 
             case 'PONG':
-                console.log(' Heartbeat recibido');
+                // Regresar el ts tal cual para que el servidor calcule el RTT
+                enviarMensaje({ tipo: 'ECO', ts: mensaje.ts });
                 break;
 
             case 'ERROR':
@@ -151,6 +161,39 @@ function manejarNuevaPregunta(mensaje) {
 }
 
 
+/**
+ * Reconexion a media partida: pregunta en curso con el tiempo que queda,
+ * respuesta correcta si ya se revelo y ranking, todo en un mensaje
+ */
+function manejarReanudar(mensaje) {
+    preguntaActual = mensaje.pregunta.pregunta;
+    mostrarPregunta(mensaje.pregunta);
+
+    const limite = preguntaActual.limiteTiempo;
+    tiempoInicio = Date.now() - (limite * 1000 - mensaje.tiempoRestanteMs);
+    puedeResponder = !mensaje.miRespuesta && mensaje.tiempoRestanteMs > 0;
+
+    if (puedeResponder) {
+        iniciarTemporizador(Math.ceil(mensaje.tiempoRestanteMs / 1000));
+    } else {
+        clearInterval(timerInterval);
+        document.querySelectorAll('.btn-opcion').forEach(btn => {
+            btn.disabled = true;
+        });
+        if (mensaje.miRespuesta) {
+            mostrarMensaje('Respuesta enviada', 'success');
+        }
+    }
+
+    if (mensaje.respuestaCorrecta) {
+        manejarRespuestaCorrecta(mensaje.respuestaCorrecta);
+    }
+    if (mensaje.ranking) {
+        actualizarRanking(mensaje.ranking.ranking || []);
+    }
+}
+
+
 function mostrarPregunta(mensaje) {
     // Actualizar número de pregunta
     document.getElementById('numeroPregunta').textContent =
@@ -0,0 +1,203 @@
+/**
+ * Decodificador del protocolo binario del juego (sparky-bin-v1)
+ * El formato esta documentado en ProtocoloBinario.java.
+ * Convierte cada trama binaria al mismo objeto que llegaria en JSON,
+ * asi el resto del cliente no cambia.
+ */
+const ProtocoloSparky = (function () {
+
+    const SUBPROTOCOLO = 'sparky-bin-v1';
+
+    const PREGUNTA = 0x01;
+    const RESPUESTA_CORRECTA = 0x02;
+    const RANKING = 0x03;
+    const RANKING_COMPLETO = 0x04;
+    const RESPUESTA_CONFIRMADA = 0x05;
+    const RESPONDIERON = 0x06;
+    const REANUDAR = 0x07;
+
+    const utf8 = new TextDecoder('utf-8');
+
+    function Lector(buffer) {
+        this.bytes = new Uint8Array(buffer);
+        this.pos = 0;
+    }
+
+    Lector.prototype.byte = function () {
+        return this.bytes[this.pos++];
+    };
+
+    Lector.prototype.varint = function () {
+        let valor = 0;
+        let desplazamiento = 0;
+        let b;
+        do {
+            b = this.bytes[this.pos++];
+            valor |= (b & 0x7F) << desplazamiento;
+            desplazamiento += 7;
+        } while (b & 0x80);
+        return valor >>> 0;
+    };
+
+    Lector.prototype.zigzag = function () {
+        const v = this.varint();
+        return (v >>> 1) ^ -(v & 1);
+    };
+
+    Lector.prototype.texto = function () {
+        const largo = this.varint();
+        const texto = utf8.decode(this.bytes.subarray(this.pos, this.pos + largo));
+        this.pos += largo;
+        return texto;
+    };
+
+    function leerJugador(lector) {
+        return {
+            posicion: lector.varint(),
+            nickname: lector.texto(),
+            puntaje: lector.varint(),
+            correctas: lector.varint(),
+            respondidas: lector.varint(),
+            cambio: lector.zigzag()
+        };
+    }
+
+    function leerRanking(lector, completo) {
+        const mensaje = { tipo: 'RANKING', total: lector.varint() };
+        const n = lector.varint();
+        const jugadores = [];
+        for (let i = 0; i < n; i++) {
+            jugadores.push(leerJugador(lector));
+        }
+        mensaje[completo ? 'ranking' : 'top'] = jugadores;
+        if (lector.byte() === 1) {
+            mensaje.miPosicion = leerJugador(lector);
+        }
+        return mensaje;
+    }
+
+    function leerPregunta(lector) {
+        const mensaje = {
+            tipo: 'PREGUNTA',
+            numeroPregunta: lector.varint(),
+            totalPreguntas: lector.varint()
+        };
+        const pregunta = {
+            preguntaId: lector.varint(),
+            puntos: lector.varint(),
+            limiteTiempo: lector.varint()
+        };
+
+        // Tabla de textos de la pregunta (se envia una sola vez)
+        const tabla = [];
+        const nTextos = lector.varint();
+        for (let i = 0; i < nTextos; i++) {
+            tabla.push(lector.texto());
+        }
+        pregunta.contenido = tabla[0];
+        pregunta.tipo = tabla[1];
+        if (tabla[2]) {
+            pregunta.imagen = tabla[2];
+        }
+
+        pregunta.opciones = [];
+        const nOpciones = lector.varint();
+        for (let i = 0; i < nOpciones; i++) {
+            const opcionId = lector.varint();
+            pregunta.opciones.push({ opcionId: opcionId, textoOpcion: tabla[lector.varint()] });
+        }
+
+        mensaje.pregunta = pregunta;
+        return mensaje;
+    }
+
+    /**
+     * Trama completa dentro de otra (varint largo + bytes); null si el largo es 0
+     */
+    function leerSubtrama(lector) {
+        const largo = lector.varint();
+        if (largo === 0) {
+            return null;
+        }
+        const inicio = lector.bytes.byteOffset + lector.pos;
+        lector.pos += largo;
+        return decodificar(lector.bytes.buffer.slice(inicio, inicio + largo));
+    }
+
+    function leerReanudar(lector) {
+        const mensaje = {
+            tipo: 'REANUDAR',
+            fase: lector.texto(),
+            tiempoRestanteMs: lector.varint()
+        };
+        const miRespuesta = lector.varint();
+        if (miRespuesta) {
+            mensaje.miRespuesta = miRespuesta;
+        }
+        mensaje.pregunta = leerSubtrama(lector);
+        const respuestaCorrecta = leerSubtrama(lector);
+        if (respuestaCorrecta) {
+            mensaje.respuestaCorrecta = respuestaCorrecta;
+        }
+        const ranking = leerSubtrama(lector);
+        if (ranking) {
+            mensaje.ranking = ranking;
+        }
+        return mensaje;
+    }
+
+    function decodificar(buffer) {
+        const lector = new Lector(buffer);
+        const tipo = lector.byte();
+
+        switch (tipo) {
+            case PREGUNTA:
+                return leerPregunta(lector);
+            case RESPUESTA_CORRECTA: {
+                const mensaje = {
+                    tipo: 'RESPUESTA_CORRECTA',
+                    preguntaId: lector.varint(),
+                    opcionCorrectaId: lector.varint()
+                };
+                const explicacion = lector.texto();
+                if (explicacion) {
+                    mensaje.explicacion = explicacion;
+                }
+                return mensaje;
+            }
+            case RANKING:
+                return leerRanking(lector, false);
+            case RANKING_COMPLETO:
+                return leerRanking(lector, true);
+            case RESPUESTA_CONFIRMADA:
+                return {
+                    tipo: 'RESPUESTA_CONFIRMADA',
+                    participanteId: lector.varint(),
+                    mensaje: 'Respuesta registrada'
+                };
+            case RESPONDIERON:
+                return {
+                    tipo: 'RESPONDIERON',
+                    respondieron: lector.varint(),
+                    total: lector.varint()
+                };
+            case REANUDAR:
+                return leerReanudar(lector);
+            default:
+                throw new Error('Tipo de trama binaria desconocido: ' + tipo);
+        }
+    }
+
+    /**
+     * Mensaje de un evento onmessage: texto = JSON, binario = este protocolo
+     */
+    function leerMensaje(data) {
+        return typeof data === 'string' ? JSON.parse(data) : decodificar(data);
+    }
+
+    return {
+        SUBPROTOCOLO: SUBPROTOCOLO,
+        decodificar: decodificar,
+        leerMensaje: leerMensaje
+    };
+})();
@@ -0,0 +1,152 @@
+package org.example.sparkytrivia.websocket;
+
+import jakarta.websocket.DecodeException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DecodificadorMensajesTest {
+
+    private final DecodificadorMensajes decodificador = new DecodificadorMensajes();
+
+    private MensajeCliente decodificar(String texto) throws DecodeException {
+        return decodificador.decode(texto);
+    }
+
+    // ---------- mensajes validos ----------
+
+    @Test
+    void pingExactoYConEspacios() throws DecodeException {
+        assertSame(MensajeCliente.Ping.INSTANCIA, decodificar("{\"tipo\":\"PING\"}"));
+        assertSame(MensajeCliente.Ping.INSTANCIA, decodificar(" { \"tipo\" : \"PING\" } "));
+    }
+
+    @Test
+    void respuestaCompleta() throws DecodeException {
+        assertEquals(new MensajeCliente.Respuesta(12, 3, 9, 4),
+                decodificar("{\"tipo\":\"RESPUESTA\",\"participanteId\":12,\"preguntaId\":3," +
+                        "\"opcionId\":9,\"tiempoTomado\":4}"));
+    }
+
+    @Test
+    void camposEnCualquierOrdenYConEspacios() throws DecodeException {
+        assertEquals(new MensajeCliente.Respuesta(12, 3, 9, 0),
+                decodificar("{ \"opcionId\" : 9 ,\n\t\"preguntaId\":3, \"participanteId\" :12, \"tipo\":\"RESPUESTA\" }"));
+    }
+
+    @Test
+    void unirseConYSinParticipante() throws DecodeException {
+        assertEquals(new MensajeCliente.Unirse(5, "ana", 7),
+                decodificar("{\"tipo\":\"UNIRSE\",\"usuarioId\":5,\"nickname\":\"ana\",\"participanteId\":7}"));
+        assertEquals(new MensajeCliente.Unirse(5, "ana", null),
+                decodificar("{\"tipo\":\"UNIRSE\",\"usuarioId\":5,\"nickname\":\"ana\",\"participanteId\":null}"));
+    }
+
+    @Test
+    void tipoDesconocidoSeConserva() throws DecodeException {
+        assertEquals(new MensajeCliente.Desconocido("OTRO"), decodificar("{\"tipo\":\"OTRO\",\"x\":true}"));
+        // Prefijo de un tipo conocido: no se confunde con PING
+        assertEquals(new MensajeCliente.Desconocido("PINGX"), decodificar("{\"tipo\":\"PINGX\"}"));
+    }
+
+    // ---------- escapes ----------
+
+    @Test
+    void escapesEnCadenas() throws DecodeException {
+        assertEquals(new MensajeCliente.Unirse(5, "ana \"la\" \u00e9\\/\n\t", null),
+                decodificar("{\"tipo\":\"UNIRSE\",\"usuarioId\":5," +
+                        "\"nickname\":\"ana \\\"la\\\" \\u00e9\\\\\\/\\n\\t\"}"));
+    }
+
+    @Test
+    void comillaEscapadaEnCampoIgnorado() throws DecodeException {
+        assertEquals(new MensajeCliente.Chat("hola"),
+                decodificar("{\"extra\":\"a\\\"}b\",\"tipo\":\"CHAT\",\"mensaje\":\"hola\"}"));
+    }
+
+    @Test
+    void escapeUnicodeIncompletoEsError() {
+        assertThrows(DecodeException.class,
+                () -> decodificar("{\"tipo\":\"CHAT\",\"mensaje\":\"\\u12\"}"));
+        assertThrows(DecodeException.class,
+                () -> decodificar("{\"tipo\":\"CHAT\",\"mensaje\":\"\\uZZZZ\"}"));
+    }
+
+    // ---------- campos desconocidos anidados ----------
+
+    @Test
+    void objetosYArreglosAnidadosSeSaltan() throws DecodeException {
+        assertEquals(new MensajeCliente.Chat("hola, mundo"),
+                decodificar("{\"extra\":{\"a\":[1,{\"b\":\"}]\"},[[]]],\"c\":{}},\"tipo\":\"CHAT\"," +
+                        "\"lista\":[true,false,null,-1.5e3],\"mensaje\":\"hola, mundo\"}"));
+    }
+
+    // ---------- numeros ----------
+
+    @Test
+    void numerosEntreComillasYConDecimales() throws DecodeException {
+        assertEquals(new MensajeCliente.Eco(123456789012L), decodificar("{\"tipo\":\"ECO\",\"ts\":\"123456789012\"}"));
+        assertEquals(new MensajeCliente.Respuesta(1, 2, 3, 4),
+                decodificar("{\"tipo\":\"RESPUESTA\",\"participanteId\":\"1\",\"preguntaId\":2," +
+                        "\"opcionId\":3,\"tiempoTomado\":4.9}"));
+    }
+
+    @Test
+    void limitesDeInt() throws DecodeException {
+        assertEquals(new MensajeCliente.Respuesta(Integer.MAX_VALUE, 0, 0, 0),
+                decodificar("{\"tipo\":\"RESPUESTA\",\"participanteId\":2147483647,\"preguntaId\":0,\"opcionId\":0}"));
+        assertEquals(new MensajeCliente.Unirse(Integer.MIN_VALUE, null, null),
+                decodificar("{\"tipo\":\"UNIRSE\",\"usuarioId\":-2147483648}"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            // Fuera de int: antes se truncaba (2147483648 -> Integer.MIN_VALUE)
+            "{\"tipo\":\"RESPUESTA\",\"participanteId\":2147483648,\"preguntaId\":1,\"opcionId\":1}",
+            "{\"tipo\":\"RESPUESTA\",\"participanteId\":-2147483649,\"preguntaId\":1,\"opcionId\":1}",
+            // Mas digitos de los que caben en un long
+            "{\"tipo\":\"ECO\",\"ts\":99999999999999999999}",
+            // Exponente
+            "{\"tipo\":\"RESPUESTA\",\"participanteId\":1e3,\"preguntaId\":1,\"opcionId\":1}",
+            // Sin digitos
+            "{\"tipo\":\"ECO\",\"ts\":-}",
+            "{\"tipo\":\"ECO\",\"ts\":\"\"}",
+            "{\"tipo\":\"ECO\",\"ts\":abc}",
+            // Digitos no ASCII
+            "{\"tipo\":\"ECO\",\"ts\":\u0661\u0662}"
+    })
+    void numerosInvalidos(String texto) {
+        assertThrows(DecodeException.class, () -> decodificar(texto));
+    }
+
+    // ---------- mal formados ----------
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "nope",
+            "{",
+            "{}",
+            "[]",
+            "{\"tipo\":",
+            "{\"tipo\":\"CHAT\",\"mensaje\":\"sin cerrar",
+            "{\"tipo\":\"CHAT\" \"mensaje\":\"x\"}",
+            "{\"tipo\":\"CHAT\",\"mensaje\":\"x\"",
+            "{\"tipo\"}",
+            "{\"tipo",
+            "{\"tipo\":123}",
+            "{\"tipo\":xRESPUESTA\"}",
+            "{\"tipo\":null}",
+            "{\"usuarioId\":5}",
+            "{\"extra\":{\"a\":[1,2}",
+            "{\"tipo\":\"RESPUESTA\"}",
+            "{\"tipo\":\"RESPUESTA\",\"participanteId\":1,\"preguntaId\":2}"
+    })
+    void malFormadosLanzanDecodeException(String texto) {
+        assertThrows(DecodeException.class, () -> decodificar(texto));
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.sparkytrivia.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EjecutorSalasTest {
+
+    @Test
+    void plataformaRespetaElTopeYCorreTodo() throws InterruptedException {
+        int maximo = 4;
+        int tareas = 200;
+        EjecutorSalas.Plataforma ejecutor = new EjecutorSalas.Plataforma(maximo);
+        AtomicInteger enCurso = new AtomicInteger();
+        AtomicInteger maximoVisto = new AtomicInteger();
+        CountDownLatch terminadas = new CountDownLatch(tareas);
+
+        for (int i = 0; i < tareas; i++) {
+            ejecutor.ejecutar(() -> {
+                maximoVisto.accumulateAndGet(enCurso.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    enCurso.decrementAndGet();
+                    terminadas.countDown();
+                }
+            });
+        }
+
+        assertTrue(terminadas.await(30, TimeUnit.SECONDS), "quedaron tareas sin correr");
+        assertTrue(maximoVisto.get() <= maximo, "hilos a la vez: " + maximoVisto.get());
+    }
+
+    @Test
+    void cadaTareaEnUnHiloNuevo() throws InterruptedException {
+        EjecutorSalas.Plataforma ejecutor = new EjecutorSalas.Plataforma(2);
+        Set<Thread> hilos = ConcurrentHashMap.newKeySet();
+        CountDownLatch terminadas = new CountDownLatch(10);
+
+        for (int i = 0; i < 10; i++) {
+            ejecutor.ejecutar(() -> {
+                hilos.add(Thread.currentThread());
+                terminadas.countDown();
+            });
+        }
+
+        assertTrue(terminadas.await(10, TimeUnit.SECONDS));
+        assertEquals(10, hilos.size(), "cada tarea en su propio hilo");
+    }
+}
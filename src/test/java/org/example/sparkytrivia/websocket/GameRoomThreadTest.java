@@ -0,0 +1,42 @@
+package org.example.sparkytrivia.websocket;
+
+import com.google.gson.JsonObject;
+import org.example.sparkytrivia.model.Sala;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class GameRoomThreadTest {
+
+    private static GameRoomThread salaSinParticipantes() {
+        Sala sala = new Sala();
+        sala.setCodigoSala("PRUEBA");
+        return new GameRoomThread(sala);
+    }
+
+    @Test
+    void descartaParticipanteQueNoEsDeLaSala() {
+        GameRoomThread juego = salaSinParticipantes();
+
+        assertFalse(juego.recibirRespuesta(new MensajeCliente.Respuesta(42, 1, 1, 3), 0));
+    }
+
+    @Test
+    void descartaIdReservadoSinTumbarLaSala() {
+        // Integer.MIN_VALUE es la marca de vacio de ConjuntoEnteros
+        GameRoomThread juego = salaSinParticipantes();
+
+        assertFalse(juego.recibirRespuesta(new MensajeCliente.Respuesta(Integer.MIN_VALUE, 1, 1, 3), 0));
+    }
+
+    @Test
+    void descartaParticipanteDesconocidoEnJson() {
+        GameRoomThread juego = salaSinParticipantes();
+        JsonObject respuesta = new JsonObject();
+        respuesta.addProperty("participanteId", Integer.MIN_VALUE);
+        respuesta.addProperty("preguntaId", 1);
+        respuesta.addProperty("opcionId", 1);
+
+        assertFalse(juego.recibirRespuesta(respuesta));
+    }
+}
@@ -0,0 +1,109 @@
+package org.example.sparkytrivia.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara el treap contra una lista ordenada con el mismo criterio
+ * (puntaje DESC, union ASC, participanteId ASC)
+ */
+class RankingIndexadoTest {
+
+    private static final Comparator<long[]> ORDEN = Comparator
+            .comparingLong((long[] j) -> -j[1])
+            .thenComparingLong(j -> j[2])
+            .thenComparingLong(j -> j[0]);
+
+    @Test
+    void salaVacia() {
+        RankingIndexado ranking = new RankingIndexado();
+
+        assertEquals(0, ranking.size());
+        assertTrue(ranking.top(10).isEmpty());
+        assertEquals(-1, ranking.posicion(1));
+    }
+
+    @Test
+    void empatesSeDesempatanPorUnionYLuegoPorId() {
+        RankingIndexado ranking = new RankingIndexado();
+        ranking.agregar(30, 100, 5);
+        ranking.agregar(10, 100, 5);
+        ranking.agregar(20, 100, 1);
+        ranking.agregar(40, 200, Long.MAX_VALUE);
+
+        assertEquals(List.of(40, 20, 10, 30), ranking.top(10));
+        assertEquals(1, ranking.posicion(40));
+        assertEquals(3, ranking.posicion(10));
+        assertEquals(4, ranking.posicion(30));
+    }
+
+    @Test
+    void coincideConListaOrdenadaEnActualizacionesAleatorias() {
+        for (long semilla = 1; semilla <= 20; semilla++) {
+            Random aleatorio = new Random(semilla);
+            RankingIndexado ranking = new RankingIndexado();
+            // participanteId -> {participanteId, puntaje, ordenUnion}
+            Map<Integer, long[]> esperado = new HashMap<>();
+
+            for (int paso = 0; paso < 2000; paso++) {
+                int id = 1 + aleatorio.nextInt(60);
+                // Pocos puntajes y uniones distintos: muchos empates
+                int puntaje = aleatorio.nextInt(8) * 100;
+                int operacion = aleatorio.nextInt(10);
+
+                if (operacion < 3 || !esperado.containsKey(id)) {
+                    long union = aleatorio.nextInt(5);
+                    ranking.agregar(id, puntaje, union);
+                    esperado.put(id, new long[]{id, puntaje, union});
+                } else {
+                    ranking.actualizar(id, puntaje);
+                    esperado.get(id)[1] = puntaje;
+                }
+
+                if (paso % 25 == 0) {
+                    verificar(ranking, esperado, aleatorio, "semilla " + semilla + ", paso " + paso);
+                }
+            }
+            verificar(ranking, esperado, aleatorio, "semilla " + semilla + ", final");
+        }
+    }
+
+    @Test
+    void actualizarDesconocidoNoHaceNada() {
+        RankingIndexado ranking = new RankingIndexado();
+        ranking.agregar(1, 50, 0);
+
+        ranking.actualizar(2, 999);
+
+        assertEquals(1, ranking.size());
+        assertEquals(List.of(1), ranking.top(5));
+        assertEquals(-1, ranking.posicion(2));
+    }
+
+    private static void verificar(RankingIndexado ranking, Map<Integer, long[]> esperado,
+                                  Random aleatorio, String caso) {
+        List<long[]> ordenados = new ArrayList<>(esperado.values());
+        ordenados.sort(ORDEN);
+        List<Integer> ids = new ArrayList<>();
+        for (long[] j : ordenados) {
+            ids.add((int) j[0]);
+        }
+
+        assertEquals(ids.size(), ranking.size(), caso);
+        assertEquals(ids, ranking.top(ids.size() + 5), caso);
+        int n = aleatorio.nextInt(ids.size() + 1);
+        assertEquals(ids.subList(0, n), ranking.top(n), caso + ", top " + n);
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i + 1, ranking.posicion(ids.get(i)), caso + ", participante " + ids.get(i));
+        }
+    }
+}